@@ -8,11 +8,13 @@ import indicateursJFX.IndicateursMeanSumRwd;
 
 import java.awt.Dimension;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.scene.chart.LineChart;
 import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
 import javafx.stage.Stage;
 
 import javax.swing.JFrame;
@@ -22,7 +24,9 @@ import pacman.environnementRL.EnvironnementPacmanMDPClassic;
 import pacman.environnementRL.EnvironnementPacmanRL;
 import pacman.environnementRL.EtatPacmanMDPClassic;
 import pacman.graphics.GamePacmanPanel;
+import agent.rlagent.ExperimentRunner;
 import agent.rlagent.QLearningAgent;
+import agent.rlagent.QTableArray;
 import agent.rlagent.RLAgent;
 import agent.strategy.StrategyExplorationTest1;
 
@@ -52,6 +56,8 @@ public class testRLPacman extends Application{
 	static boolean DISPLAYCHART = true;
 	/** //met un point tous les DELTA_DISPLAY epi */
 	static int DELTA_DISPLAY = 5;
+	/** nombre d'experiences lancees en parallele */
+	static int NBTHREADS = Runtime.getRuntime().availableProcessors();
 
 
 	
@@ -65,81 +71,94 @@ public class testRLPacman extends Application{
 	static LineChart<Number,Number> lineChart;
 	static Scene scene;
 	
-	private static void setRLAgent(){
+	/**
+	 * Cree un environnement et un RLAgent independants (une experience)
+	 * @param headless pour un jeu sans affichage, plus rapide
+	 */
+	private static RLAgent creeRLAgent(boolean headless){
+		EnvironnementPacmanRL env;
+		RLAgent agent;
 		//QLearning tabulaire classique
-		/*pacmanmdp = new EnvironnementPacmanMDPClassic(mazename,true);
-		rlagent = new QLearningAgent(alpha,gamma,pacmanmdp);*/
+		/*env = new EnvironnementPacmanMDPClassic(mazename,true,headless);
+		agent = new QLearningAgent(alpha,gamma,env,new QTableArray());*/
 
 		//Qlearning avec fonctions caracteristiques identite
-		/*pacmanmdp = new EnvironnementPacmanMDPClassic(mazename,true);
-	    EtatPacmanMDPClassic etatmdp = (EtatPacmanMDPClassic) pacmanmdp.getEtatCourant();
+		/*env = new EnvironnementPacmanMDPClassic(mazename,true,headless);
+	    EtatPacmanMDPClassic etatmdp = (EtatPacmanMDPClassic) env.getEtatCourant();
 		System.out.println("Dimensions de etatMDP: " + etatmdp.getDimensions());
 		FeatureFunction featurefunction = new FeatureFunctionIdentity(etatmdp.getDimensions(),4);
-		rlagent = new QLApproxAgent(alpha,gamma,pacmanmdp,featurefunction);*/
+		agent = new QLApproxAgent(alpha,gamma,env,featurefunction);*/
 
 		//QLearning avec approximation lineaire
-		pacmanmdp = new EnvironnementPacmanFeatureRL(mazename,true);
+		env = new EnvironnementPacmanFeatureRL(mazename,true,headless);
 		FeatureFunction featureFunction = new FeatureFunctionPacman();
-		rlagent = new QLApproxAgent(alpha,gamma,pacmanmdp,featureFunction);
+		agent = new QLApproxAgent(alpha,gamma,env,featureFunction);
+
+		agent.setGamma(gamma);
+		agent.setMaxnbpasparepisode(10000);
+		//l'indicateur n'utilise que la somme des recompenses notifiee en fin d'episode
+		if (agent instanceof QLearningAgent)
+			((QLearningAgent) agent).setPeriodeNotification(Integer.MAX_VALUE);
+		return agent;
 	}
 	
 	/**
-	 * creation jeu pacman et RLAgent 
+	 * options d'affichage communes aux experiences
 	 */
 	private static void common(){
-		testRLPacman.setRLAgent();
-		rlagent.setGamma(gamma);
-		rlagent.DISPRL = false;
-		rlagent.DISPEPISODE = true;
-		rlagent.setMaxnbpasparepisode(10000);
+		RLAgent.DISPRL = false;
+		RLAgent.DISPEPISODE = true;
+	}
 
-		if (DISPLAYPACMANGAME){
-		  	pacmanmdp.getGamepacman().setStep_delay(0);
-			//creation fenetre d'affichage
-			panel=new GamePacmanPanel(pacmanmdp.getGamepacman().getState());
-			pacmanmdp.getGamepacman().addObserver(panel);
-			
-			frame = new JFrame("FrameDemo");
-			frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-			frame.setPreferredSize(new Dimension(640,480));
-			frame.add(panel);
-			frame.pack();
-			frame.setVisible(false);
-		}
+	/**
+	 * creation fenetre d'affichage du jeu de pacman de rlagent
+	 */
+	private static void creeFenetre(){
+	  	pacmanmdp.getGamepacman().setStep_delay(0);
+		panel=new GamePacmanPanel(pacmanmdp.getGamepacman().getState());
+		pacmanmdp.getGamepacman().addObserver(panel);
+		
+		frame = new JFrame("FrameDemo");
+		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		frame.setPreferredSize(new Dimension(640,480));
+		frame.add(panel);
+		frame.pack();
+		frame.setVisible(false);
 	}
 
 	/** trace courbe moyenne sur plusieurs expe, affiche jeu pacman sur derniers episodes greedy de derniere expe */
 	private static void apprentissage(){
 		long timerStart = System.currentTimeMillis();
 		//nb d'episode greedy ou gagne / nbepisodegreedy
-		int nbwin=0;
+		AtomicInteger nbwin=new AtomicInteger();
 		
-		//si affiche courbe a la fin de l'apprentissage
-		if (DISPLAYCHART){
-			lineChart = new IndicateursMeanSumRwd(new NumberAxis(),new NumberAxis(),nbepisodelearn+nbepisodegreedy+nbepisodegreedydisplay,nbmean,rlagent);
-			((IndicateursMeanSumRwd) lineChart).setDeltapoints(DELTA_DISPLAY);
-		}
-		
-		for (int i=0;i<nbmean;i++){
-			System.out.println("Expe "+i);
-			rlagent.setStratExplorationGreedy(_epsilon);
-			rlagent.setEpisodeNb(0);
-			rlagent.runEpisode(nbepisodelearn);//runEpisode {while !etatabsorbant}
+		//les experiences sont independantes: chacune a son agent et son jeu, lancees en parallele
+		//seul le jeu de la derniere experience peut etre affiche ensuite
+		ExperimentRunner runner = new ExperimentRunner(nbmean,nbepisodelearn+nbepisodegreedy,NBTHREADS);
+		runner.run(numExpe -> creeRLAgent(!DISPLAYPACMANGAME || numExpe!=nbmean-1), (agent,numExpe) -> {
+			System.out.println("Expe "+numExpe);
+			agent.setStratExplorationGreedy(_epsilon);
+			agent.setEpisodeNb(0);
+			agent.runEpisode(nbepisodelearn);//runEpisode {while !etatabsorbant}
 	
 				
-			rlagent.setStratExplorationGreedy(0.0);
+			agent.setStratExplorationGreedy(0.0);
+			EnvironnementPacmanRL env = (EnvironnementPacmanRL) agent.getEnv();
 			for (int nbepi=0; nbepi<nbepisodegreedy; nbepi++){
-				rlagent.runEpisode(1);//runEpisode {while !etatabsorbant}
-				if(pacmanmdp.getGamepacman().isWin()) nbwin++;
+				agent.runEpisode(1);//runEpisode {while !etatabsorbant}
+				if(env.getGamepacman().isWin()) nbwin.incrementAndGet();
 			}
-			
-		}
+		});
+		rlagent = runner.getAgent(nbmean-1);
+		pacmanmdp = (EnvironnementPacmanRL) rlagent.getEnv();
 	    
 	
 	   //calcule moyenne des donnees et inscrit dans chart
 		double[] data ;
 		if (DISPLAYCHART){
-			data = ((IndicateursMeanSumRwd) lineChart).computeResults();
+			//l'indicateur sans agent n'alloue pas ses tableaux: il sert seulement de graphique, rempli ici
+			lineChart = new IndicateursMeanSumRwd(new NumberAxis(),new NumberAxis(),nbepisodelearn+nbepisodegreedy,nbmean);
+			data = traceMoyennes(runner.getMoyennes());
 		}
 
 	  /* 	for (int i=0;i<nbepisode;i++){
@@ -148,10 +167,11 @@ public class testRLPacman extends Application{
 */
 		long timerStop = System.currentTimeMillis();
 		
-		System.out.println("PACMAN  greedy gagne "+nbwin+ " fois sur "+nbmean*nbepisodegreedy+" : "+ (nbwin*100/(nbmean*nbepisodegreedy))+"%");
+		System.out.println("PACMAN  greedy gagne "+nbwin+ " fois sur "+nbmean*nbepisodegreedy+" : "+ (nbwin.get()*100/(nbmean*nbepisodegreedy))+"%");
 		System.out.println("Temps: " + (timerStop - timerStart) + "ms");
 		if (DISPLAYPACMANGAME){
 			//pour voir jeu pacman en mode greedy
+			creeFenetre();
 			pacmanmdp.getGamepacman().setStep_delay(100); // Default: 300ms
 			frame.setVisible(true);
 			try {
@@ -168,6 +188,23 @@ public class testRLPacman extends Application{
 	}
 	
 	
+	/**
+	 * ajoute a la serie de lineChart un point tous les DELTA_DISPLAY episodes: la moyenne de moyennes sur ces episodes
+	 * @return les valeurs des points
+	 */
+	private static double[] traceMoyennes(double[] moyennes){
+		double[] points = new double[moyennes.length/DELTA_DISPLAY];
+		XYChart.Series<Number,Number> serie = lineChart.getData().get(0);
+		for (int p=0; p<points.length; p++){
+			double somme = 0;
+			for (int i=p*DELTA_DISPLAY; i<(p+1)*DELTA_DISPLAY; i++)
+				somme += moyennes[i];
+			points[p] = somme/DELTA_DISPLAY;
+			serie.getData().add(new XYChart.Data<>(p*DELTA_DISPLAY, points[p]));
+		}
+		return points;
+	}
+	
 	/**
 	 * @param args
 	 */
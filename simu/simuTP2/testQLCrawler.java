@@ -15,6 +15,7 @@ import environnement.crawler.CrawlingRobotEnvironnement;
 import environnement.gridworld.GridworldEnvironnement;
 import environnement.gridworld.GridworldMDP;
 import agent.rlagent.QLearningAgent;
+import agent.rlagent.QTableConcurrente;
 import agent.rlagent.RLAgent;
 import vueCrawler.VueCrawlerAbstrait;
 import vueCrawler.VueCrawlerManuel;
@@ -34,7 +35,8 @@ public class testQLCrawler  extends Application{
 		
 		g = new CrawlingRobotEnvironnement(nbEtatBras,nbEtatMain);
 		
-		 a = new QLearningAgent(alpha,gamma,g);
+		//la vue lit la table pendant que le thread des episodes l'apprend
+		 a = new QLearningAgent(alpha,gamma,g,new QTableConcurrente());
 		
 		a.setStratExplorationGreedy(0.1);//sinon strat exploration par defaut est manuelle
 		
@@ -0,0 +1,144 @@
+package agent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Source centrale des nombres aleatoires des agents, des strategies et des fantomes: chaque thread tire dans son propre
+ * flux ({@link SplittableRandom}), sans verrou ni graine partagee entre threads.
+ * <p>
+ * Le flux d'un thread est cree a sa premiere utilisation en divisant le flux racine, initialise par
+ * {@link #setGraine(long)}. Pour qu'une experience soit reproductible quel que soit le thread qui l'execute, le thread
+ * lui associe un flux au debut de l'experience avec {@link #setGraineThread(long)}, par ex. avec une graine tiree par
+ * {@link #nouvelleGraine()} dans l'ordre des experiences (voir {@link agent.rlagent.ExperimentRunner}).
+ * <p>
+ * Les classes qui attendent un {@link Random} (comme le champ rand de {@link ValueAgent}) utilisent {@link #getRandom()},
+ * qui tire dans le flux du thread appelant.
+ */
+public final class RandomProvider {
+	
+	private static SplittableRandom racine = new SplittableRandom();
+	
+	private static final ThreadLocal<SplittableRandom> courant = ThreadLocal.withInitial(RandomProvider::divise);
+	
+	private static final Random ADAPTATEUR = new RandomThread();
+	
+	private RandomProvider() {
+	}
+	
+	/**
+	 * A {@link Random} that draws from the stream of the calling thread. Its own seed is never used.
+	 */
+	private static final class RandomThread extends Random {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected int next(int bits) {
+			return (int) (get().nextLong() >>> (64 - bits));
+		}
+		
+		@Override
+		public int nextInt() {
+			return get().nextInt();
+		}
+		
+		@Override
+		public int nextInt(int bound) {
+			return get().nextInt(bound);
+		}
+		
+		@Override
+		public long nextLong() {
+			return get().nextLong();
+		}
+		
+		@Override
+		public double nextDouble() {
+			return get().nextDouble();
+		}
+		
+		@Override
+		public boolean nextBoolean() {
+			return get().nextBoolean();
+		}
+	}
+	
+	/* METHODS */
+	
+	private static synchronized SplittableRandom divise() {
+		return racine.split();
+	}
+	
+	/**
+	 * @return Return the random stream of the calling thread.
+	 */
+	@NotNull
+	public static SplittableRandom get() {
+		return courant.get();
+	}
+	
+	/**
+	 * @return Return a {@link Random} which draws from the stream of the calling thread, for the code that needs a
+	 * {@link Random}. It can be shared between threads.
+	 */
+	@NotNull
+	public static Random getRandom() {
+		return ADAPTATEUR;
+	}
+	
+	/**
+	 * Seed the root stream, and give the calling thread a new stream split from it. The streams of the other threads
+	 * are not changed; the threads created later split the root stream in the order of their first draw.
+	 * @param graine The seed.
+	 */
+	public static synchronized void setGraine(long graine) {
+		racine = new SplittableRandom(graine);
+		courant.set(racine.split());
+	}
+	
+	/**
+	 * Give the calling thread its own stream, built from `graine` only: the draws of the thread are then reproducible,
+	 * whatever the other threads do.
+	 * @param graine The seed of the stream.
+	 */
+	public static void setGraineThread(long graine) {
+		courant.set(new SplittableRandom(graine));
+	}
+	
+	/**
+	 * Give the calling thread the stream `flux`, e.g. the own stream of one of several environments stepped by a pool of
+	 * threads: the draws of each environment then do not depend on which thread steps it.
+	 * @param flux The new stream of the thread.
+	 * @return Return the previous stream of the thread, to be given back after.
+	 */
+	@NotNull
+	public static SplittableRandom setFlux(@NotNull SplittableRandom flux) {
+		SplittableRandom precedent = courant.get();
+		courant.set(flux);
+		return precedent;
+	}
+	
+	/**
+	 * @return Return a new seed drawn from the root stream, e.g. one per experiment, drawn in the order of the experiments
+	 * before they are run.
+	 */
+	public static synchronized long nouvelleGraine() {
+		return racine.nextLong();
+	}
+	
+	/**
+	 * @return Return an int in [0 ; bound[ drawn from the stream of the calling thread.
+	 */
+	public static int nextInt(int bound) {
+		return get().nextInt(bound);
+	}
+	
+	/**
+	 * @return Return a double in [0 ; 1[ drawn from the stream of the calling thread.
+	 */
+	public static double nextDouble() {
+		return get().nextDouble();
+	}
+}
@@ -0,0 +1,129 @@
+package agent.planningagent;
+
+import environnement.Action;
+import environnement.Etat;
+import environnement.MDP;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * Cet agent met a jour sa fonction de valeur avec la version inplace de value iteration (Gauss-Seidel):
+ * V(s) est remplace des qu'il est calcule, et les etats suivants de la meme iteration utilisent deja cette nouvelle valeur.
+ * <p>
+ * Les deux modes de {@link ValueIterationAgent} sont possibles: par defaut les etats et transitions sont indexes par
+ * {@link IndexedMDP} (mode dense), sinon V est mis a jour directement dans la HashMap. Une iteration est sequentielle
+ * par nature: nbWorkers n'est pas utilise.
+ */
+public class GaussSeidelValueIterationAgent extends ValueIterationAgent {
+	
+	/**
+	 * @param gamma
+	 * @param mdp
+	 * @param dense si vrai, V est calcule sur des tableaux primitifs (cf {@link IndexedMDP})
+	 */
+	public GaussSeidelValueIterationAgent(double gamma, MDP mdp, boolean dense) {
+		super(gamma, mdp, dense);
+	}
+	public GaussSeidelValueIterationAgent(double gamma, MDP mdp) {
+		this(gamma, mdp, true);
+	}
+	public GaussSeidelValueIterationAgent(MDP mdp) {
+		this(0.9, mdp);
+	}
+	
+	@Override
+	public void updateV() {
+		this.delta = 0.0;
+		
+		if (isDense())
+			updateVDense();
+		else
+			updateVHashMap();
+	}
+	
+	/**
+	 * Mise a jour de V: effectue UNE iteration inplace, dans l'ordre des indices des etats, et notifie ses observateurs.
+	 */
+	@Override
+	protected void updateVDense() {
+		double[] v = values;
+		double newDelta = 0.;
+		
+		for (int s = 0, n = indexedMDP.getNbEtats(); s < n; s++) {
+			if (indexedMDP.estAbsorbant(s))
+				continue;
+			
+			double value = indexedMDP.backup(s, v, gamma);
+			double r = Math.abs(value - v[s]);
+			if (newDelta < r)
+				newDelta = r;
+			
+			v[s] = value;
+			nbBackups++;
+		}
+		nbIterations++;
+		
+		this.delta = newDelta;
+		updateVminVmax();
+		
+		System.out.println("updateV> delta = " + this.delta);
+		
+		this.notifyObs();
+	}
+	
+	/**
+	 * Mise a jour de V en mode HashMap: effectue UNE iteration inplace, dans l'ordre de getEtatsAccessibles, et notifie
+	 * ses observateurs.
+	 */
+	protected void updateVHashMap() {
+		HashMap<Etat, Double> v = getV();
+		LinkedHashMap<Action, Double> results = new LinkedHashMap<>();
+		double newDelta = 0.;
+		
+		for (Etat e : mdp.getEtatsAccessibles()) {
+			if (mdp.estAbsorbant(e))
+				continue;
+			
+			results.clear();
+			double value = computeVActions(results, e, v);
+			double r = Math.abs(value - v.getOrDefault(e, 0d));
+			if (newDelta < r)
+				newDelta = r;
+			
+			v.put(e, value);
+			nbBackups++;
+		}
+		nbIterations++;
+		
+		this.delta = newDelta;
+		updateVminVmax();
+		
+		System.out.println("updateV> delta = " + this.delta);
+		
+		this.notifyObs();
+	}
+	
+	/**
+	 * Met a jour vmin et vmax (utilises pour l'affichage du gradient de couleur) a partir de V.
+	 */
+	protected void updateVminVmax() {
+		vmin = 0d;
+		vmax = 0d;
+		if (isDense()) {
+			for (double value : values)
+				updateVminVmax(value);
+		}
+		else {
+			for (double value : getV().values())
+				updateVminVmax(value);
+		}
+	}
+	
+	private void updateVminVmax(double value) {
+		if (vmax < value)
+			vmax = value;
+		if (vmin > value)
+			vmin = value;
+	}
+}
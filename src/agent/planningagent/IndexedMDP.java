@@ -0,0 +1,338 @@
+package agent.planningagent;
+
+import environnement.Action;
+import environnement.Etat;
+import environnement.MDP;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Representation indexee d'un {@link MDP}: les etats de {@link MDP#getEtatsAccessibles()} sont numerotes une seule fois,
+ * et les transitions sont stockees dans des tableaux primitifs au format CSR (compressed sparse row).
+ * <p>
+ * Pour l'etat d'indice s, les actions possibles occupent les cases [actionStart[s] ; actionStart[s+1][ de
+ * {@link #actions}. Pour l'action de case k, les transitions occupent les cases [transitionStart[k] ; transitionStart[k+1][
+ * de {@link #next}, {@link #proba} et {@link #reward}.
+ * <p>
+ * Les tableaux ne sont plus modifies apres construction: une meme instance peut etre lue par plusieurs threads.
+ */
+public class IndexedMDP {
+	
+	/**
+	 * The MDP that has been indexed.
+	 */
+	private final MDP mdp;
+	
+	/**
+	 * Maps an index to its state.
+	 */
+	private final Etat[] etats;
+	
+	/**
+	 * Maps a state to its index.
+	 */
+	private final HashMap<Etat, Integer> indexes;
+	
+	private final boolean[] absorbant;
+	
+	private final int[] actionStart;
+	private final Action[] actions;
+	
+	private final int[] transitionStart;
+	private final int[] next;
+	private final double[] proba;
+	private final double[] reward;
+	
+	/**
+	 * Predecessors index, in CSR format: the states p such that T(p,a,s) > 0 for some a are
+	 * predecessors[predecessorStart[s] ; predecessorStart[s+1][. Built on demand.
+	 */
+	private int[] predecessorStart;
+	private int[] predecessors;
+	
+	/**
+	 * Index all the accessible states of `mdp`, and store their transitions and rewards once and for all.
+	 * @param mdp The MDP to index.
+	 */
+	public IndexedMDP(@NotNull MDP mdp) {
+		this.mdp = mdp;
+		
+		List<Etat> accessibles = mdp.getEtatsAccessibles();
+		
+		// States reachable from a transition but not listed in `getEtatsAccessibles()` are appended at the end, without
+		// any action: their value stays at 0, as in `ValueIterationAgent`.
+		ArrayList<Etat> allStates = new ArrayList<>(accessibles);
+		indexes = new HashMap<>(2 * accessibles.size());
+		for (int s = 0; s < allStates.size(); s++)
+			indexes.put(allStates.get(s), s);
+		
+		ArrayList<Action> actionList = new ArrayList<>();
+		ArrayList<Integer> actionOwner = new ArrayList<>();
+		ArrayList<Integer> transitionStartList = new ArrayList<>();
+		ArrayList<Integer> nextList = new ArrayList<>();
+		ArrayList<Double> probaList = new ArrayList<>();
+		ArrayList<Double> rewardList = new ArrayList<>();
+		
+		for (int s = 0; s < accessibles.size(); s++) {
+			Etat e = accessibles.get(s);
+			if (mdp.estAbsorbant(e))
+				continue;
+			
+			for (Action a : mdp.getActionsPossibles(e)) {
+				Map<Etat, Double> transitions;
+				try {
+					transitions = mdp.getEtatTransitionProba(e, a);
+				} catch (Exception ex) {
+					ex.printStackTrace();
+					continue;
+				}
+				
+				actionList.add(a);
+				actionOwner.add(s);
+				transitionStartList.add(nextList.size());
+				
+				for (Map.Entry<Etat, Double> transition : transitions.entrySet()) {
+					Etat etatSuivant = transition.getKey();
+					Integer index = indexes.get(etatSuivant);
+					if (index == null) {
+						index = allStates.size();
+						allStates.add(etatSuivant);
+						indexes.put(etatSuivant, index);
+					}
+					
+					nextList.add(index);
+					probaList.add(transition.getValue());
+					rewardList.add(mdp.getRecompense(e, a, etatSuivant));
+				}
+			}
+		}
+		
+		// Convert the lists into primitive arrays
+		int nbEtats = allStates.size();
+		etats = allStates.toArray(new Etat[0]);
+		
+		absorbant = new boolean[nbEtats];
+		for (int s = 0; s < accessibles.size(); s++)
+			absorbant[s] = mdp.estAbsorbant(etats[s]);
+		
+		actions = actionList.toArray(new Action[0]);
+		actionStart = new int[nbEtats + 1];
+		for (int owner : actionOwner)
+			actionStart[owner + 1]++;
+		for (int s = 0; s < nbEtats; s++)
+			actionStart[s + 1] += actionStart[s];
+		
+		transitionStart = new int[actions.length + 1];
+		for (int k = 0; k < actions.length; k++)
+			transitionStart[k] = transitionStartList.get(k);
+		transitionStart[actions.length] = nextList.size();
+		
+		next = new int[nextList.size()];
+		proba = new double[nextList.size()];
+		reward = new double[nextList.size()];
+		for (int t = 0; t < next.length; t++) {
+			next[t] = nextList.get(t);
+			proba[t] = probaList.get(t);
+			reward[t] = rewardList.get(t);
+		}
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Compute Q(s,a) = sum_s' T(s,a,s') * (R(s,a,s') + gamma * V(s')).
+	 * @param k The index of the action (between {@link #getActionStart(int)} and {@link #getActionEnd(int)}).
+	 * @param v The value function, indexed by state.
+	 * @param gamma The discount factor.
+	 * @return Return the Q-value of the action `k`.
+	 */
+	public double qValue(int k, @NotNull double[] v, double gamma) {
+		double q = 0.;
+		for (int t = transitionStart[k], end = transitionStart[k + 1]; t < end; t++)
+			q += proba[t] * (reward[t] + gamma * v[next[t]]);
+		
+		return q;
+	}
+	
+	/**
+	 * Compute the Bellman backup max_a Q(s,a) of the state `s`.
+	 * @param s The index of the state. It must not be absorbing.
+	 * @param v The value function, indexed by state.
+	 * @param gamma The discount factor.
+	 * @return Return the new value of `s`, or 0 if no action is possible in `s`.
+	 */
+	public double backup(int s, @NotNull double[] v, double gamma) {
+		int start = actionStart[s];
+		int end = actionStart[s + 1];
+		if (start == end)
+			return 0.;
+		
+		double best = Double.NEGATIVE_INFINITY;
+		for (int k = start; k < end; k++) {
+			double q = qValue(k, v, gamma);
+			if (best < q)
+				best = q;
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Get the action(s) with the highest Q-value in the state `s`.
+	 * @param s The index of the state.
+	 * @param v The value function, indexed by state.
+	 * @param gamma The discount factor.
+	 * @return Return the list of the best actions, or an empty list if `s` is absorbing.
+	 */
+	@NotNull
+	public List<Action> getPolitique(int s, @NotNull double[] v, double gamma) {
+		List<Action> returnActions = new ArrayList<>();
+		if (absorbant[s])
+			return returnActions;
+		
+		double best = Double.NEGATIVE_INFINITY;
+		for (int k = actionStart[s], end = actionStart[s + 1]; k < end; k++) {
+			double q = qValue(k, v, gamma);
+			if (best < q) {
+				returnActions.clear();
+				best = q;
+				returnActions.add(actions[k]);
+			}
+			else if (best == q)
+				returnActions.add(actions[k]);
+		}
+		
+		return returnActions;
+	}
+	
+	/**
+	 * Build the predecessors index, if it has not been built yet. Each predecessor appears once per state, whatever the
+	 * number of actions leading to it.
+	 */
+	public synchronized void buildPredecessors() {
+		if (predecessors != null)
+			return;
+		
+		int nbEtats = etats.length;
+		int[] start = new int[nbEtats + 1];
+		// lastSeen[s] = last predecessor added to s, to skip duplicates (the predecessors are visited in order)
+		int[] lastSeen = new int[nbEtats];
+		Arrays.fill(lastSeen, -1);
+		
+		// First pass: count the predecessors of each state
+		for (int p = 0; p < nbEtats; p++) {
+			for (int t = transitionStart[actionStart[p]], end = transitionStart[actionStart[p + 1]]; t < end; t++) {
+				int s = next[t];
+				if (lastSeen[s] != p) {
+					lastSeen[s] = p;
+					start[s + 1]++;
+				}
+			}
+		}
+		for (int s = 0; s < nbEtats; s++)
+			start[s + 1] += start[s];
+		
+		// Second pass: fill the predecessors
+		int[] preds = new int[start[nbEtats]];
+		int[] fill = Arrays.copyOf(start, nbEtats);
+		Arrays.fill(lastSeen, -1);
+		for (int p = 0; p < nbEtats; p++) {
+			for (int t = transitionStart[actionStart[p]], end = transitionStart[actionStart[p + 1]]; t < end; t++) {
+				int s = next[t];
+				if (lastSeen[s] != p) {
+					lastSeen[s] = p;
+					preds[fill[s]++] = p;
+				}
+			}
+		}
+		
+		predecessorStart = start;
+		predecessors = preds;
+	}
+	
+	/* GETTERS */
+	
+	@NotNull
+	public MDP getMdp() {
+		return mdp;
+	}
+	
+	public int getNbEtats() {
+		return etats.length;
+	}
+	
+	public int getNbTransitions() {
+		return next.length;
+	}
+	
+	@NotNull
+	public Etat getEtat(int s) {
+		return etats[s];
+	}
+	
+	/**
+	 * @param e The state.
+	 * @return Return the index of `e`, or -1 if `e` is not indexed.
+	 */
+	public int getIndex(Etat e) {
+		Integer index = indexes.get(e);
+		return index == null ? -1 : index;
+	}
+	
+	public boolean estAbsorbant(int s) {
+		return absorbant[s];
+	}
+	
+	public int getActionStart(int s) {
+		return actionStart[s];
+	}
+	
+	public int getActionEnd(int s) {
+		return actionStart[s + 1];
+	}
+	
+	@NotNull
+	public Action getAction(int k) {
+		return actions[k];
+	}
+	
+	public int getTransitionStart(int k) {
+		return transitionStart[k];
+	}
+	
+	public int getTransitionEnd(int k) {
+		return transitionStart[k + 1];
+	}
+	
+	public int getNext(int t) {
+		return next[t];
+	}
+	
+	public double getProba(int t) {
+		return proba[t];
+	}
+	
+	public double getReward(int t) {
+		return reward[t];
+	}
+	
+	/**
+	 * {@link #buildPredecessors()} must have been called before.
+	 */
+	public int getPredecessorStart(int s) {
+		return predecessorStart[s];
+	}
+	
+	public int getPredecessorEnd(int s) {
+		return predecessorStart[s + 1];
+	}
+	
+	public int getPredecessor(int i) {
+		return predecessors[i];
+	}
+}
@@ -2,8 +2,8 @@ package agent.planningagent;
 
 import java.util.List;
 import java.util.Observable;
-import java.util.Random;
 
+import agent.RandomProvider;
 import agent.ValueAgent;
 import util.HashMapUtil;
 import environnement.Action;
@@ -24,13 +24,23 @@ public abstract class PlanningValueAgent extends ValueAgent implements IPlanning
 	 */
 	protected double delta;
 	
+	/**
+	 * precision pour la convergence dans run
+	 */
+	public static double EPSILON = 0.0001;
 	
-	
+	/**
+	 * nombre d'iterations (appels a updateV) et de mises a jour de V(s) effectues depuis le dernier reset,
+	 * pour comparer les vitesses de convergence des differents agents
+	 */
+	protected int nbIterations;
+	protected long nbBackups;
 	
 	
 	public PlanningValueAgent(MDP mdp) {
 		super();
 		this.mdp = mdp;
+		this.rand = RandomProvider.getRandom();
 	//	this.nbIterations = nbIterations;
 		this.vmin =Double.MAX_VALUE;
 		this.vmax =-Double.MAX_VALUE;
@@ -58,13 +68,14 @@ public abstract class PlanningValueAgent extends ValueAgent implements IPlanning
 	 */
 	public void run(){
 		int nbIter=0;
-		double epsilon = 0.0001;
+		long nbBackupsInit = this.nbBackups;
+		double epsilon = EPSILON;
 		do{
 			this.updateV();
 			nbIter++;
 		}
 		while(this.getDelta()>epsilon);
-		System.out.println("Convergence a "+epsilon+" pres de VI apres "+nbIter+" iterations.");
+		System.out.println("Convergence a "+epsilon+" pres de "+getClass().getSimpleName()+" apres "+nbIter+" iterations et "+(this.nbBackups-nbBackupsInit)+" backups.");
 	}
 	
 	/**
@@ -74,6 +85,13 @@ public abstract class PlanningValueAgent extends ValueAgent implements IPlanning
 	 */
 	public abstract void updateV();
 	
+	@Override
+	public void reset() {
+		super.reset();
+		this.nbIterations = 0;
+		this.nbBackups = 0;
+	}
+	
 	
 	
 /*	public int getNbIterations() {
@@ -93,6 +111,12 @@ public abstract class PlanningValueAgent extends ValueAgent implements IPlanning
 	public MDP getMdp() {
 		return mdp;
 	}
+	public int getNbIterations() {
+		return nbIterations;
+	}
+	public long getNbBackups() {
+		return nbBackups;
+	}
 	
 	
 }
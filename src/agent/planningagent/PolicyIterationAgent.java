@@ -0,0 +1,247 @@
+package agent.planningagent;
+
+import environnement.Action;
+import environnement.Action2D;
+import environnement.Etat;
+import environnement.MDP;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Cet agent calcule sa politique avec policy iteration: il alterne
+ * <li> l'evaluation de la politique courante, en resolvant V = R_pi + gamma * P_pi * V de maniere iterative
+ * (Gauss-Seidel sur les tableaux creux de {@link IndexedMDP}),
+ * <li> l'amelioration gloutonne de la politique selon V.
+ * <p>
+ * Une iteration ({@link #updateV()}) est une evaluation suivie d'une amelioration. {@link #run()} s'arrete lorsque la
+ * politique ne change plus.
+ */
+public class PolicyIterationAgent extends PlanningValueAgent {
+	
+	/**
+	 * discount facteur
+	 */
+	protected double gamma;
+	
+	protected IndexedMDP indexedMDP;
+	
+	/**
+	 * fonction de valeur de la politique courante, indexee par etat
+	 */
+	protected double[] values;
+	
+	/**
+	 * politique courante: indice (dans {@link IndexedMDP}) de l'action choisie dans chaque etat, -1 si aucune action
+	 */
+	protected int[] politique;
+	
+	/**
+	 * vrai si la derniere amelioration n'a modifie l'action d'aucun etat
+	 */
+	protected boolean politiqueStable;
+	
+	/**
+	 * l'evaluation s'arrete lorsque la plus grande modification de V lors d'un parcours est inferieure a epsilonEvaluation,
+	 * ou apres maxParcoursEvaluation parcours
+	 */
+	protected double epsilonEvaluation = PlanningValueAgent.EPSILON / 10;
+	protected int maxParcoursEvaluation = 100000;
+	
+	public PolicyIterationAgent(double gamma, MDP mdp) {
+		super(mdp);
+		this.gamma = gamma;
+		this.indexedMDP = new IndexedMDP(mdp);
+		this.values = new double[indexedMDP.getNbEtats()];
+		this.politique = new int[indexedMDP.getNbEtats()];
+		initPolitique();
+	}
+	public PolicyIterationAgent(MDP mdp) {
+		this(0.9, mdp);
+	}
+	
+	/**
+	 * Politique initiale: la premiere action possible de chaque etat.
+	 */
+	private void initPolitique() {
+		for (int s = 0; s < politique.length; s++) {
+			int start = indexedMDP.getActionStart(s);
+			politique[s] = indexedMDP.estAbsorbant(s) || start == indexedMDP.getActionEnd(s) ? -1 : start;
+		}
+		politiqueStable = false;
+	}
+	
+	/**
+	 * Effectue UNE iteration de policy iteration (evaluation puis amelioration) et notifie ses observateurs.
+	 * delta est la plus grande modification de V(s) par rapport a l'iteration precedente.
+	 */
+	@Override
+	public void updateV() {
+		double[] oldValues = Arrays.copyOf(values, values.length);
+		
+		evaluePolitique();
+		politiqueStable = ameliorePolitique();
+		nbIterations++;
+		
+		this.delta = 0.;
+		this.vmin = 0.;
+		this.vmax = 0.;
+		for (int s = 0; s < values.length; s++) {
+			double r = Math.abs(values[s] - oldValues[s]);
+			if (this.delta < r)
+				this.delta = r;
+			if (vmax < values[s])
+				vmax = values[s];
+			if (vmin > values[s])
+				vmin = values[s];
+		}
+		
+		System.out.println("updateV> delta = " + this.delta + ", politique stable: " + politiqueStable);
+		
+		this.notifyObs();
+	}
+	
+	/**
+	 * Resout V(s) = sum_s' T(s,pi(s),s') * (R(s,pi(s),s') + gamma * V(s')) par Gauss-Seidel, en partant de la valeur de la
+	 * politique precedente.
+	 */
+	protected void evaluePolitique() {
+		for (int parcours = 0; parcours < maxParcoursEvaluation; parcours++) {
+			double residu = 0.;
+			
+			for (int s = 0; s < values.length; s++) {
+				if (indexedMDP.estAbsorbant(s))
+					continue;
+				
+				double value = politique[s] == -1 ? 0. : indexedMDP.qValue(politique[s], values, gamma);
+				double r = Math.abs(value - values[s]);
+				if (residu < r)
+					residu = r;
+				
+				values[s] = value;
+				nbBackups++;
+			}
+			
+			if (residu < epsilonEvaluation)
+				return;
+		}
+		
+		System.err.println("PolicyIterationAgent> evaluation stopped after " + maxParcoursEvaluation + " sweeps");
+	}
+	
+	/**
+	 * Choisit dans chaque etat l'action gloutonne selon V. L'action courante est conservee si elle fait partie des
+	 * meilleures, pour que l'algorithme ne boucle pas entre deux politiques equivalentes.
+	 * @return vrai si aucune action n'a change
+	 */
+	protected boolean ameliorePolitique() {
+		boolean stable = true;
+		
+		for (int s = 0; s < politique.length; s++) {
+			if (politique[s] == -1)
+				continue;
+			
+			int best = politique[s];
+			double bestQ = indexedMDP.qValue(best, values, gamma);
+			for (int k = indexedMDP.getActionStart(s), end = indexedMDP.getActionEnd(s); k < end; k++) {
+				double q = indexedMDP.qValue(k, values, gamma);
+				if (q > bestQ + 1e-12) {
+					best = k;
+					bestQ = q;
+				}
+			}
+			
+			if (best != politique[s]) {
+				politique[s] = best;
+				stable = false;
+			}
+		}
+		
+		return stable;
+	}
+	
+	/**
+	 * Itere jusqu'a ce que la politique ne change plus
+	 */
+	@Override
+	public void run() {
+		int nbIter = 0;
+		long nbBackupsInit = this.nbBackups;
+		do {
+			this.updateV();
+			nbIter++;
+		}
+		while (!politiqueStable);
+		System.out.println("Convergence de " + getClass().getSimpleName() + " apres " + nbIter + " iterations et " + (this.nbBackups - nbBackupsInit) + " backups.");
+	}
+	
+	/**
+	 * renvoi l'action de la politique courante dans l'etat e
+	 * Si aucune actions possibles, renvoi Action2D.NONE
+	 */
+	@Override
+	public Action getAction(Etat e) {
+		int s = indexedMDP.getIndex(e);
+		if (s == -1 || politique[s] == -1)
+			return Action2D.NONE;
+		
+		return indexedMDP.getAction(politique[s]);
+	}
+	
+	@Override
+	public double getValeur(Etat e) {
+		int s = indexedMDP.getIndex(e);
+		return s == -1 ? 0d : values[s];
+	}
+	
+	/**
+	 * renvoi action(s) de plus forte(s) valeur(s) dans etat selon V
+	 * (plusieurs actions sont renvoyees si valeurs identiques, liste vide si aucune action n'est possible)
+	 */
+	@Override
+	public List<Action> getPolitique(Etat e) {
+		int s = indexedMDP.getIndex(e);
+		return s == -1 ? new ArrayList<Action>() : indexedMDP.getPolitique(s, values, gamma);
+	}
+	
+	@Override
+	public void reset() {
+		super.reset();
+		Arrays.fill(values, 0d);
+		initPolitique();
+		
+		this.notifyObs();
+	}
+	
+	public boolean isPolitiqueStable() {
+		return politiqueStable;
+	}
+	
+	public double getGamma() {
+		return gamma;
+	}
+	
+	@Override
+	public void setGamma(double _g) {
+		this.gamma = _g;
+		this.politiqueStable = false;
+		System.out.println("gamma= " + gamma);
+	}
+	
+	public double getEpsilonEvaluation() {
+		return epsilonEvaluation;
+	}
+	
+	public void setEpsilonEvaluation(double epsilonEvaluation) {
+		this.epsilonEvaluation = epsilonEvaluation;
+	}
+	
+	public int getMaxParcoursEvaluation() {
+		return maxParcoursEvaluation;
+	}
+	
+	public void setMaxParcoursEvaluation(int maxParcoursEvaluation) {
+		this.maxParcoursEvaluation = maxParcoursEvaluation;
+	}
+}
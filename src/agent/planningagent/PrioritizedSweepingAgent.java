@@ -0,0 +1,212 @@
+package agent.planningagent;
+
+import environnement.Action;
+import environnement.MDP;
+import util.FilePriorite;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Cet agent met a jour sa fonction de valeur avec prioritized sweeping: au lieu de parcourir tous les etats, il met a
+ * jour en priorite (inplace) l'etat dont l'erreur de Bellman |max_a Q(s,a) - V(s)| est la plus grande, puis recalcule
+ * l'erreur de ses predecesseurs.
+ * <p>
+ * Une iteration ({@link #updateV()}) effectue au plus autant de backups qu'il y a d'etats, ce qui permet de comparer le
+ * nombre d'iterations avec {@link ValueIterationAgent}. delta est l'erreur de Bellman la plus grande restant dans la
+ * file: run() s'arrete donc lorsque toutes les erreurs sont inferieures a {@link PlanningValueAgent#EPSILON}.
+ * <p>
+ * Les predecesseurs sont toujours lus dans un {@link IndexedMDP}; en mode HashMap, V reste stocke dans la HashMap.
+ */
+public class PrioritizedSweepingAgent extends GaussSeidelValueIterationAgent {
+	
+	/**
+	 * Element de la file de priorite: un etat et son erreur de Bellman au moment de l'insertion.
+	 * Si l'erreur de l'etat a change depuis, l'element est obsolete et ignore lorsqu'il est enleve.
+	 */
+	private static class Priorite {
+		private final int etat;
+		private final double erreur;
+		
+		private Priorite(int etat, double erreur) {
+			this.etat = etat;
+			this.erreur = erreur;
+		}
+	}
+	
+	/**
+	 * Les etats dont l'erreur de Bellman depasse theta, la plus grande erreur en tete.
+	 */
+	private FilePriorite<Priorite> file = new FilePriorite<>((p1, p2) -> Double.compare(p2.erreur, p1.erreur));
+	
+	/**
+	 * erreur de Bellman courante de chaque etat dans la file (0 si absent de la file)
+	 */
+	private double[] erreurs;
+	
+	/**
+	 * Un etat n'est (re)mis dans la file que si son erreur de Bellman depasse theta.
+	 */
+	protected double theta = PlanningValueAgent.EPSILON;
+	
+	private final LinkedHashMap<Action, Double> results = new LinkedHashMap<>();
+	
+	/**
+	 * @param gamma
+	 * @param mdp
+	 * @param dense si vrai, V est calcule sur des tableaux primitifs (cf {@link IndexedMDP})
+	 */
+	public PrioritizedSweepingAgent(double gamma, MDP mdp, boolean dense) {
+		super(gamma, mdp, dense);
+		if (indexedMDP == null)
+			indexedMDP = new IndexedMDP(mdp);
+		indexedMDP.buildPredecessors();
+	}
+	public PrioritizedSweepingAgent(double gamma, MDP mdp) {
+		this(gamma, mdp, true);
+	}
+	public PrioritizedSweepingAgent(MDP mdp) {
+		this(0.9, mdp);
+	}
+	
+	@Override
+	protected void updateVDense() {
+		balaye();
+	}
+	
+	@Override
+	protected void updateVHashMap() {
+		balaye();
+	}
+	
+	/**
+	 * Mise a jour de V: effectue au plus nbEtats backups, par ordre de priorite, et notifie ses observateurs.
+	 */
+	private void balaye() {
+		if (erreurs == null)
+			initFile();
+		
+		for (int i = 0, n = indexedMDP.getNbEtats(); i < n && !file.estVide(); i++) {
+			Priorite p = file.enleve();
+			int s = p.etat;
+			if (p.erreur != erreurs[s]) {
+				// Obsolete element: do not count it as a backup
+				i--;
+				continue;
+			}
+			
+			setValeur(s, backup(s));
+			erreurs[s] = 0.;
+			nbBackups++;
+			
+			// The value of s has changed: update the Bellman error of its predecessors
+			for (int k = indexedMDP.getPredecessorStart(s), end = indexedMDP.getPredecessorEnd(s); k < end; k++)
+				updateErreur(indexedMDP.getPredecessor(k));
+		}
+		nbIterations++;
+		
+		this.delta = getErreurMax();
+		updateVminVmax();
+		
+		System.out.println("updateV> delta = " + this.delta);
+		
+		this.notifyObs();
+	}
+	
+	/**
+	 * Calcule l'erreur de Bellman de tous les etats et remplit la file.
+	 */
+	private void initFile() {
+		erreurs = new double[indexedMDP.getNbEtats()];
+		file.clear();
+		
+		for (int s = 0; s < erreurs.length; s++)
+			updateErreur(s);
+	}
+	
+	/**
+	 * Recalcule l'erreur de Bellman de s, et l'insere dans la file si elle depasse theta.
+	 * Le calcul de l'erreur est compte comme un backup.
+	 */
+	private void updateErreur(int s) {
+		if (indexedMDP.estAbsorbant(s))
+			return;
+		
+		double erreur = Math.abs(backup(s) - getValeur(s));
+		nbBackups++;
+		
+		if (erreur <= theta)
+			// An element still in the file becomes obsolete
+			erreurs[s] = 0.;
+		else if (erreur != erreurs[s]) {
+			erreurs[s] = erreur;
+			file.insere(new Priorite(s, erreur));
+		}
+	}
+	
+	/**
+	 * @return la valeur de l'etat d'indice s, dans le mode courant
+	 */
+	private double getValeur(int s) {
+		return isDense() ? values[s] : V.getOrDefault(indexedMDP.getEtat(s), 0d);
+	}
+	
+	private void setValeur(int s, double value) {
+		if (isDense())
+			values[s] = value;
+		else
+			V.put(indexedMDP.getEtat(s), value);
+	}
+	
+	/**
+	 * @return max_a Q(s,a) pour l'etat d'indice s, calcule comme {@link IndexedMDP#backup} dans les deux modes
+	 */
+	private double backup(int s) {
+		if (isDense())
+			return indexedMDP.backup(s, values, gamma);
+		
+		// States only reached by transitions have no action in the index, and keep the value 0
+		if (indexedMDP.getActionStart(s) == indexedMDP.getActionEnd(s))
+			return 0d;
+		
+		results.clear();
+		return computeVActions(results, indexedMDP.getEtat(s), V);
+	}
+	
+	/**
+	 * @return la plus grande erreur de Bellman de la file, 0 si la file est vide
+	 */
+	private double getErreurMax() {
+		while (!file.estVide()) {
+			Priorite p = file.enleve();
+			if (p.erreur == erreurs[p.etat]) {
+				file.insere(p);
+				return p.erreur;
+			}
+		}
+		
+		return 0.;
+	}
+	
+	@Override
+	public void reset() {
+		super.reset();
+		// The Bellman errors depend on V: they are recomputed at the next iteration
+		erreurs = null;
+		file.clear();
+	}
+	
+	@Override
+	public void setGamma(double _g) {
+		super.setGamma(_g);
+		erreurs = null;
+	}
+	
+	public double getTheta() {
+		return theta;
+	}
+	
+	public void setTheta(double theta) {
+		this.theta = theta;
+		erreurs = null;
+	}
+}
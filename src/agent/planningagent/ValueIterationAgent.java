@@ -3,9 +3,13 @@ package agent.planningagent;
 import environnement.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Cet agent met a jour sa fonction de valeur avec value iteration 
@@ -15,6 +19,18 @@ import java.util.Map;
  */
 //@SuppressWarnings("Duplicates")
 public class ValueIterationAgent extends PlanningValueAgent{
+	/**
+	 * nombre de threads par defaut pour les iterations des agents crees en mode dense (le mode HashMap est toujours
+	 * sequentiel), configurable sans modifier le code avec -Dplanning.workers=N
+	 */
+	public static int NB_WORKERS = Integer.getInteger("planning.workers", 1);
+	
+	/**
+	 * en dessous de ce nombre d'etats, les iterations restent sequentielles: une iteration sequentielle dure alors moins
+	 * d'une milliseconde environ (0.25ms pour 6400 etats d'un gridworld), et le cout du fork-join n'est pas rattrape
+	 */
+	public static int PARALLEL_THRESHOLD = 32768;
+	
 	/**
 	 * discount facteur
 	 */
@@ -25,19 +41,54 @@ public class ValueIterationAgent extends PlanningValueAgent{
 	 */
 	protected HashMap<Etat,Double> V;
 	
+	/**
+	 * mode dense: V est stocke dans {@link #values}, indexe par {@link #indexedMDP}, au lieu de la HashMap {@link #V}
+	 */
+	protected boolean dense;
+	
+	/**
+	 * etats et transitions du MDP indexes une seule fois (utilise seulement en mode dense)
+	 */
+	protected IndexedMDP indexedMDP;
+	
+	/**
+	 * V_{k-1} et V_k indexes par etat (utilises seulement en mode dense), echanges a chaque iteration
+	 */
+	protected double[] values;
+	protected double[] newValues;
+	
+	/**
+	 * nombre de threads utilises pour une iteration (1: sequentiel). Au dela de 1, le mode dense est necessaire.
+	 */
+	protected int nbWorkers = 1;
+	
+	/**
+	 * pool des threads, cree a la premiere iteration parallele et ferme a la fin de run (cf {@link #fermePool()})
+	 */
+	private ForkJoinPool pool;
+	
 	/**
 	 * 
 	 * @param gamma
 	 * @param mdp
+	 * @param dense si vrai, V est calcule sur des tableaux primitifs (cf {@link IndexedMDP})
 	 */
-	public ValueIterationAgent(double gamma, MDP mdp) {
+	public ValueIterationAgent(double gamma, MDP mdp, boolean dense) {
 		super(mdp);
 		this.gamma = gamma;
 		
 		// Initialisation
 		this.V = new HashMap<Etat, Double>();
-		for (Etat etat : this.mdp.getEtatsAccessibles())
-			V.put(etat, 0d);
+		if (dense) {
+			setDense(true);
+			setNbWorkers(NB_WORKERS);
+		}
+		else
+			for (Etat etat : this.mdp.getEtatsAccessibles())
+				V.put(etat, 0d);
+	}
+	public ValueIterationAgent(double gamma, MDP mdp) {
+		this(gamma, mdp, false);
 	}
 	public ValueIterationAgent(MDP mdp) {
 		this(0.9,mdp);
@@ -45,12 +96,15 @@ public class ValueIterationAgent extends PlanningValueAgent{
 	
 	/**
 	 * Compute a part of V(e) by calculating all the sum of states according to a given action `a`.
-	 * @param results The list that maps from an action to the result of doing this action. It is passed by reference,
-	 *                which means it is the result of the function.
+	 * @param results The list that maps from an action to the result of doing this action, in the order of
+	 *                `mdp.getActionsPossibles(e)`. It is passed by reference, which means it is the result of the
+	 *                function.
 	 * @param e The state `e` in V(e).
-	 * @return Return the best result contained in `results`.
+	 * @param v The values V(s') of the next states.
+	 * @return Return the best result contained in `results` (the same backup as {@link IndexedMDP#backup}), or 0 if no
+	 * action is possible.
 	 */
-	private double computeVActions(HashMap<Action, Double> results, Etat e) {
+	protected double computeVActions(LinkedHashMap<Action, Double> results, Etat e, Map<Etat, Double> v) {
 		for (Action a : mdp.getActionsPossibles(e)) {
 			results.put(a, 0d);
 			try {
@@ -61,21 +115,26 @@ public class ValueIterationAgent extends PlanningValueAgent{
 					// Compute T, R and V_{k-1}(s')
 					double T = proba.get(etatSuivant);
 					double R = mdp.getRecompense(e, a, etatSuivant);
-					double VsPrime = getV().getOrDefault(etatSuivant, 0d);
+					double VsPrime = v.getOrDefault(etatSuivant, 0d);
 					
 					// Compute final result
 					results.put(a, results.getOrDefault(a, 0d) + T * (R + getGamma() * VsPrime));
 				}
 			} catch (Exception ex) {
 				ex.printStackTrace();
+				// As in IndexedMDP, an action whose transitions are unknown is ignored
+				results.remove(a);
 			}
 		}
 		
+		if (results.isEmpty())
+			return 0d;
+		
 		// Choose the best result such that it is maximized (according to a)
-		double result = 0d;
+		double result = Double.NEGATIVE_INFINITY;
 		for (Action a : results.keySet())
-			if (result < results.getOrDefault(a, 0d))
-				result = results.getOrDefault(a, 0d);
+			if (result < results.get(a))
+				result = results.get(a);
 			
 		return result;
 	}
@@ -94,21 +153,28 @@ public class ValueIterationAgent extends PlanningValueAgent{
 		//Dans cette classe, il  faut juste mettre a jour delta
 		this.delta = 0.0;
 		
+		if (isDense()) {
+			updateVDense();
+			return;
+		}
+		
 		// VOTRE CODE
 		
-		// Capture old V for delta
+		// Capture old V: V_k is computed from V_{k-1} only, as in the dense mode
 		HashMap<Etat,Double> oldV = new HashMap<>(getV());
 		
 		// Store all the results over the set of actions
-		HashMap<Action, Double> results = new HashMap<>();
+		LinkedHashMap<Action, Double> results = new LinkedHashMap<>();
 		
 		for (Etat e : mdp.getEtatsAccessibles()) {
 			if (!mdp.estAbsorbant(e)) {
 				results.clear();
 				
-				getV().put(e, computeVActions(results, e));
+				getV().put(e, computeVActions(results, e, oldV));
+				nbBackups++;
 			}
 		}
+		nbIterations++;
 		
 		// Compute delta
 		for (Etat e : mdp.getEtatsAccessibles()) {
@@ -138,6 +204,151 @@ public class ValueIterationAgent extends PlanningValueAgent{
 	}
 	
 	
+	/**
+	 * Mise a jour de V en mode dense: effectue UNE iteration de value iteration sur les tableaux primitifs
+	 * (calcule newValues a partir de values), puis echange les deux tableaux et notifie ses observateurs.
+	 * <p>
+	 * Chaque etat ne depend que de values pendant l'iteration: si nbWorkers > 1, les etats sont repartis sur un
+	 * {@link ForkJoinPool}, et delta, vmin et vmax sont calcules par reduction.
+	 */
+	protected void updateVDense() {
+		double[] v = values;
+		double[] nv = newValues;
+		int n = indexedMDP.getNbEtats();
+		
+		double[] result;
+		if (nbWorkers > 1 && n >= PARALLEL_THRESHOLD) {
+			if (pool == null)
+				pool = new ForkJoinPool(nbWorkers);
+			
+			// A few tasks per worker, so that the work-stealing balances the states with many transitions
+			int grain = Math.max(256, n / (4 * nbWorkers));
+			result = pool.invoke(new SweepTask(0, n, grain, v, nv));
+		}
+		else
+			result = sweep(0, n, v, nv);
+		
+		values = nv;
+		newValues = v;
+		
+		this.delta = result[0];
+		this.vmin = result[1];
+		this.vmax = result[2];
+		this.nbBackups += (long) result[3];
+		this.nbIterations++;
+		
+		System.out.println("updateV> delta = " + this.delta);
+		
+		this.notifyObs();
+	}
+	
+	/**
+	 * Calcule nv pour les etats d'indice [from ; to[ a partir de v.
+	 * @return {delta, vmin, vmax, nombre de backups} sur [from ; to[
+	 */
+	private double[] sweep(int from, int to, double[] v, double[] nv) {
+		double newDelta = 0.;
+		double newVmin = 0.;
+		double newVmax = 0.;
+		int backups = 0;
+		
+		for (int s = from; s < to; s++) {
+			double value;
+			if (indexedMDP.estAbsorbant(s))
+				value = v[s];
+			else {
+				value = indexedMDP.backup(s, v, gamma);
+				backups++;
+			}
+			nv[s] = value;
+			
+			double r = Math.abs(value - v[s]);
+			if (newDelta < r)
+				newDelta = r;
+			if (newVmax < value)
+				newVmax = value;
+			if (newVmin > value)
+				newVmin = value;
+		}
+		
+		return new double[] {newDelta, newVmin, newVmax, backups};
+	}
+	
+	/**
+	 * Partie d'une iteration parallele: coupe [from ; to[ en deux jusqu'a atteindre grain etats, puis reduit
+	 * {delta, vmin, vmax, nombre de backups} des deux moities.
+	 */
+	private class SweepTask extends RecursiveTask<double[]> {
+		private static final long serialVersionUID = 1L;
+		
+		private final int from;
+		private final int to;
+		private final int grain;
+		private final double[] v;
+		private final double[] nv;
+		
+		SweepTask(int from, int to, int grain, double[] v, double[] nv) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.v = v;
+			this.nv = nv;
+		}
+		
+		@Override
+		protected double[] compute() {
+			if (to - from <= grain)
+				return sweep(from, to, v, nv);
+			
+			int middle = (from + to) >>> 1;
+			SweepTask left = new SweepTask(from, middle, grain, v, nv);
+			left.fork();
+			double[] right = new SweepTask(middle, to, grain, v, nv).compute();
+			double[] result = left.join();
+			
+			result[0] = Math.max(result[0], right[0]);
+			result[1] = Math.min(result[1], right[1]);
+			result[2] = Math.max(result[2], right[2]);
+			result[3] += right[3];
+			return result;
+		}
+	}
+	
+	/**
+	 * Les threads des iterations paralleles sont liberes a la fin.
+	 */
+	@Override
+	public void run() {
+		try {
+			super.run();
+		} finally {
+			fermePool();
+		}
+	}
+	
+	/**
+	 * Les threads des iterations paralleles sont liberes a la fin.
+	 */
+	@Override
+	public void run(int nbIterations) {
+		try {
+			super.run(nbIterations);
+		} finally {
+			fermePool();
+		}
+	}
+	
+	/**
+	 * Arrete les threads des iterations paralleles. Le pool est recree a la prochaine iteration parallele: cette methode
+	 * est a appeler apres des appels directs a {@link #updateV()}.
+	 */
+	public void fermePool() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+	
 	/**
 	 * renvoi l'action executee par l'agent dans l'etat e 
 	 * Si aucune actions possibles, renvoi Action2D.NONE
@@ -164,6 +375,11 @@ public class ValueIterationAgent extends PlanningValueAgent{
         //(la valeur est calculée dans updateV)
 		// VOTRE CODE
 		
+		if (isDense()) {
+			int s = indexedMDP.getIndex(e);
+			return s == -1 ? 0d : values[s];
+		}
+		
 		return getV().getOrDefault(e, 0d);
 	}
 	/**
@@ -177,12 +393,17 @@ public class ValueIterationAgent extends PlanningValueAgent{
 		// retourne action de meilleure valeur dans e selon V,
 		// retourne liste vide si aucune action legale (etat absorbant)
 		
+		if (isDense()) {
+			int s = indexedMDP.getIndex(e);
+			return s == -1 ? new ArrayList<Action>() : indexedMDP.getPolitique(s, values, gamma);
+		}
+		
 		List<Action> returnActions = new ArrayList<Action>();
-		HashMap<Action, Double> results = new HashMap<>();
+		LinkedHashMap<Action, Double> results = new LinkedHashMap<>();
 		
 		if (!mdp.estAbsorbant(e)) {
 			
-			double result = computeVActions(results, e);
+			double result = computeVActions(results, e, getV());
 			
 			// Now that we know the best value, search for every actions with that same result
 			for (Action a : results.keySet())
@@ -197,17 +418,89 @@ public class ValueIterationAgent extends PlanningValueAgent{
 	public void reset() {
 		super.reset(); //reinitialise les valeurs de V
 		// VOTRE CODE
-		getV().clear();
-		for (Etat e : mdp.getEtatsAccessibles())
-			getV().put(e, 0d);
+		if (isDense()) {
+			Arrays.fill(values, 0d);
+			Arrays.fill(newValues, 0d);
+		}
+		else {
+			getV().clear();
+			for (Etat e : mdp.getEtatsAccessibles())
+				getV().put(e, 0d);
+		}
 		
 		this.notifyObs();
 	}
 	
+	/**
+	 * En mode dense, la HashMap est reconstruite a partir des tableaux a chaque appel: la modifier n'a pas d'effet sur
+	 * l'agent.
+	 * @return la fonction de valeur des etats
+	 */
 	public HashMap<Etat,Double> getV() {
+		if (isDense()) {
+			V.clear();
+			for (int s = 0, n = indexedMDP.getNbEtats(); s < n; s++)
+				V.put(indexedMDP.getEtat(s), values[s]);
+		}
+		
 		return V;
 	}
 	
+	public int getNbWorkers() {
+		return nbWorkers;
+	}
+	
+	/**
+	 * @param nbWorkers nombre de threads pour une iteration. Au dela de 1, l'agent doit etre en mode dense
+	 *                  (cf {@link #setDense(boolean)}).
+	 * @throws IllegalStateException si nbWorkers > 1 et que l'agent n'est pas en mode dense
+	 */
+	public void setNbWorkers(int nbWorkers) {
+		if (nbWorkers < 1)
+			throw new IllegalArgumentException("The number of workers must be positive: " + nbWorkers);
+		if (nbWorkers > 1 && !isDense())
+			throw new IllegalStateException("Parallel sweeps need the dense mode: call setDense(true) first");
+		
+		if (nbWorkers != this.nbWorkers)
+			fermePool();
+		this.nbWorkers = nbWorkers;
+	}
+	
+	public boolean isDense() {
+		return dense;
+	}
+	
+	/**
+	 * Active ou desactive le mode dense. La fonction de valeur courante est conservee.
+	 * Le MDP est indexe lors de la premiere activation: il ne doit plus etre modifie ensuite.
+	 * @param dense
+	 * @throws IllegalStateException si le mode dense est desactive alors que nbWorkers > 1
+	 */
+	public void setDense(boolean dense) {
+		if (dense == this.dense)
+			return;
+		if (!dense && nbWorkers > 1)
+			throw new IllegalStateException("Parallel sweeps need the dense mode: call setNbWorkers(1) first");
+		
+		if (dense) {
+			if (indexedMDP == null)
+				indexedMDP = new IndexedMDP(mdp);
+			
+			values = new double[indexedMDP.getNbEtats()];
+			newValues = new double[indexedMDP.getNbEtats()];
+			for (int s = 0; s < values.length; s++)
+				values[s] = V.getOrDefault(indexedMDP.getEtat(s), 0d);
+		}
+		else {
+			// Materialize V before leaving the dense mode
+			getV();
+			values = null;
+			newValues = null;
+		}
+		
+		this.dense = dense;
+	}
+	
 	public double getGamma() {
 		return gamma;
 	}
@@ -0,0 +1,72 @@
+package agent.rlagent;
+
+import environnement.Action;
+import environnement.Etat;
+
+import java.util.List;
+
+/**
+ * Plusieurs environnements independants joues en meme temps: chaque appel a {@link #doActions(Action[])} fait une
+ * action dans chacun d'eux (un pas par environnement).
+ * <p>
+ * Un environnement dont l'episode se termine est remis a zero automatiquement: apres {@link #doActions(Action[])},
+ * {@link #getEtatSuivant(int)} est l'etat atteint par l'action (eventuellement absorbant), et {@link #getEtat(int)}
+ * l'etat depuis lequel jouer la prochaine action (l'etat initial d'un nouvel episode si le precedent est fini).
+ * Les etats renvoyes ne sont pas modifies par les pas suivants.
+ */
+public interface EnvironnementBatch {
+	
+	/**
+	 * @return Return the number of environments.
+	 */
+	int getNbEnvironnements();
+	
+	/**
+	 * @param i The index of the environment.
+	 * @return Return the state in which the next action of the environment `i` is played.
+	 */
+	Etat getEtat(int i);
+	
+	/**
+	 * @param i The index of the environment.
+	 * @return Return the legal actions in {@link #getEtat(int)}.
+	 */
+	List<Action> getActionsPossibles(int i);
+	
+	/**
+	 * Play one action in every environment, then reset the environments whose episode is over.
+	 * @param actions The action of each environment.
+	 */
+	void doActions(Action[] actions);
+	
+	/**
+	 * @param i The index of the environment.
+	 * @return Return the state reached by the last action of the environment `i`.
+	 */
+	Etat getEtatSuivant(int i);
+	
+	/**
+	 * @param i The index of the environment.
+	 * @return Return the legal actions in {@link #getEtatSuivant(int)}.
+	 */
+	List<Action> getActionsSuivantes(int i);
+	
+	/**
+	 * @param i The index of the environment.
+	 * @return Return the reward of the last action of the environment `i`.
+	 */
+	double getRecompense(int i);
+	
+	/**
+	 * @param i The index of the environment.
+	 * @return Return true if {@link #getEtatSuivant(int)} is absorbing.
+	 */
+	boolean estAbsorbant(int i);
+	
+	/**
+	 * @param i The index of the environment.
+	 * @return Return true if the last action ended the episode, because an absorbing state was reached or because the
+	 * episode was too long. The environment has then been reset.
+	 */
+	boolean estFini(int i);
+}
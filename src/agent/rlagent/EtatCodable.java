@@ -0,0 +1,17 @@
+package agent.rlagent;
+
+import environnement.Etat;
+
+/**
+ * Etat entierement decrit par un code entier: deux etats sont egaux si et seulement si ils ont le meme code.
+ * <p>
+ * Une table des Q-valeurs peut alors indexer l'etat par son code ({@link QTableArray}), sans garder de reference vers
+ * l'etat lui-meme.
+ */
+public interface EtatCodable extends Etat {
+	
+	/**
+	 * @return Return the code of the state. `equals` and `hashCode` must be consistent with it.
+	 */
+	long getCode();
+}
@@ -0,0 +1,209 @@
+package agent.rlagent;
+
+import agent.RandomProvider;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Observer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Lance plusieurs experiences independantes en parallele sur un pool de threads: chaque experience a son propre
+ * agent et son propre environnement, crees par une {@link Fabrique}, puis deroule son {@link Protocole}.
+ * <p>
+ * Les sommes des recompenses notifiees par l'agent a la fin de chaque episode sont enregistrees par experience.
+ * {@link #getMoyennes()} les moyenne par episode comme IndicateursMeanSumRwd#computeResults, et
+ * {@link #rejoue(Observer)} les transmet dans l'ordre des experiences a un observateur, comme si les experiences avaient
+ * ete lancees l'une apres l'autre.
+ * <p>
+ * Chaque experience tire ses nombres aleatoires dans son propre flux ({@link RandomProvider}), dont la graine est tiree
+ * avant le lancement dans l'ordre des experiences: apres {@link RandomProvider#setGraine(long)}, les resultats sont les
+ * memes quel que soit le nombre de threads.
+ */
+public class ExperimentRunner {
+	
+	/**
+	 * Creates the agent (and its environment) of an experiment.
+	 */
+	@FunctionalInterface
+	public interface Fabrique {
+		/**
+		 * @param numExpe The index of the experiment, from 0 to nbExpe - 1.
+		 * @return Return a new agent, whose environment is not shared with any other experiment.
+		 */
+		RLAgent creeAgent(int numExpe);
+	}
+	
+	/**
+	 * Runs the episodes of an experiment.
+	 */
+	@FunctionalInterface
+	public interface Protocole {
+		/**
+		 * @param agent The agent of the experiment.
+		 * @param numExpe The index of the experiment.
+		 */
+		void lance(RLAgent agent, int numExpe);
+	}
+	
+	private final int nbExpe;
+	private final int nbEpisodes;
+	private final int nbThreads;
+	
+	/**
+	 * Sum of the rewards of each episode, for each experiment.
+	 */
+	private double[][] recompenses;
+	
+	private RLAgent[] agents;
+	
+	/**
+	 * @param nbExpe The number of experiments.
+	 * @param nbEpisodes The number of episodes recorded per experiment. The following episodes are ignored.
+	 * @param nbThreads The number of experiments run at the same time.
+	 */
+	public ExperimentRunner(int nbExpe, int nbEpisodes, int nbThreads) {
+		if (nbExpe < 1 || nbEpisodes < 1 || nbThreads < 1)
+			throw new IllegalArgumentException("The numbers of experiments, episodes and threads must be strictly positive (given: " + nbExpe + ", " + nbEpisodes + ", " + nbThreads + ")");
+		
+		this.nbExpe = nbExpe;
+		this.nbEpisodes = nbEpisodes;
+		this.nbThreads = nbThreads;
+	}
+	/**
+	 * Run one experiment per available processor at the same time.
+	 */
+	public ExperimentRunner(int nbExpe, int nbEpisodes) {
+		this(nbExpe, nbEpisodes, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Run all the experiments, and wait for them to finish.
+	 * @param fabrique Creates the agent of each experiment. It is called from the worker threads.
+	 * @param protocole The episodes of an experiment. It is called from the worker threads, after the thread has been
+	 *                  given the random stream of the experiment.
+	 * @throws RuntimeException if an experiment throws an exception (the other experiments are cancelled).
+	 */
+	public void run(@NotNull Fabrique fabrique, @NotNull Protocole protocole) {
+		recompenses = new double[nbExpe][nbEpisodes];
+		agents = new RLAgent[nbExpe];
+		
+		// Drawn here, in order, so that an experiment gets the same stream whatever thread runs it
+		long[] graines = new long[nbExpe];
+		for (int i = 0; i < nbExpe; i++)
+			graines[i] = RandomProvider.nouvelleGraine();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(nbThreads, nbExpe));
+		try {
+			List<Future<?>> futures = new ArrayList<>(nbExpe);
+			for (int i = 0; i < nbExpe; i++) {
+				final int numExpe = i;
+				futures.add(executor.submit(() -> lanceExperience(fabrique, protocole, numExpe, graines[numExpe])));
+			}
+			
+			for (Future<?> future : futures)
+				future.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for the experiments", ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("An experiment failed", ex.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@SuppressWarnings("deprecation")
+	private void lanceExperience(Fabrique fabrique, Protocole protocole, int numExpe, long graine) {
+		RandomProvider.setGraineThread(graine);
+		RLAgent agent = fabrique.creeAgent(numExpe);
+		
+		// Only the rewards are read: the agent does not need to notify each Q-value update
+		if (agent instanceof QLearningAgent)
+			((QLearningAgent) agent).setPeriodeNotification(Integer.MAX_VALUE);
+		
+		double[] data = recompenses[numExpe];
+		int[] numEpisode = {0};
+		agent.addObserver((o, arg) -> {
+			if (arg instanceof Double && numEpisode[0] < data.length)
+				data[numEpisode[0]++] = (Double) arg;
+		});
+		
+		protocole.lance(agent, numExpe);
+		agents[numExpe] = agent;
+	}
+	
+	/**
+	 * @return Return the mean over the experiments of the sum of the rewards of each episode.
+	 */
+	public double[] getMoyennes() {
+		checkRun();
+		
+		double[] moyennes = new double[nbEpisodes];
+		for (double[] data : recompenses)
+			for (int i = 0; i < nbEpisodes; i++)
+				moyennes[i] += data[i];
+		
+		for (int i = 0; i < nbEpisodes; i++)
+			moyennes[i] /= nbExpe;
+		
+		return moyennes;
+	}
+	
+	/**
+	 * Notify `indicateur` with the sum of the rewards of each episode, experiment after experiment (nbExpe * nbEpisodes
+	 * values), as the agents notify their observers at the end of each episode. IndicateursMeanSumRwd can only be
+	 * notified if it has been built with an agent (the constructor without agent does not allocate its buffers): to plot
+	 * the means, use {@link #getMoyennes()}.
+	 */
+	@SuppressWarnings("deprecation")
+	public void rejoue(@NotNull Observer indicateur) {
+		checkRun();
+		
+		for (double[] data : recompenses)
+			for (double r : data)
+				indicateur.update(null, r);
+	}
+	
+	private void checkRun() {
+		if (recompenses == null)
+			throw new IllegalStateException("The experiments have not been run");
+	}
+	
+	/* GETTERS & SETTERS */
+	
+	/**
+	 * @param numExpe The index of the experiment.
+	 * @return Return the agent of the experiment, after {@link #run(Fabrique, Protocole)}.
+	 */
+	public RLAgent getAgent(int numExpe) {
+		checkRun();
+		return agents[numExpe];
+	}
+	
+	/**
+	 * @return Return the sum of the rewards of each episode (first index: experiment, second index: episode).
+	 */
+	public double[][] getRecompenses() {
+		checkRun();
+		return recompenses;
+	}
+	
+	public int getNbExpe() {
+		return nbExpe;
+	}
+	
+	public int getNbEpisodes() {
+		return nbEpisodes;
+	}
+	
+	public int getNbThreads() {
+		return nbThreads;
+	}
+}
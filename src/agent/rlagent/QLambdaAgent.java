@@ -0,0 +1,200 @@
+package agent.rlagent;
+
+import environnement.Action;
+import environnement.Environnement;
+import environnement.Etat;
+
+import java.util.Arrays;
+
+/**
+ * Q(lambda) de Watkins avec une table des Q-valeurs: chaque mise a jour corrige, en plus du couple (e,a) qui vient
+ * d'etre joue, les couples visites recemment, proportionnellement a leur trace d'eligibilite. La recompense se propage
+ * ainsi en un seul episode le long du chemin parcouru, au lieu d'un pas en arriere par episode.
+ * <p>
+ * Les traces sont remplacantes (la trace du couple joue est remise a 1), puis multipliees par gamma * lambda a chaque
+ * pas. Seuls les couples dont la trace depasse {@link #seuilTrace} sont gardes: il y en a au plus
+ * log(seuilTrace) / log(gamma * lambda) + 1, ce qui borne le cout d'un pas. Les traces sont effacees au debut de chaque
+ * episode, et lorsque l'action choisie n'est pas gloutonne (les corrections suivantes ne concernent alors plus la
+ * politique gloutonne).
+ */
+public class QLambdaAgent extends QLearningAgent {
+	
+	private double lambda;
+	/**
+	 * The traces under this threshold are dropped.
+	 */
+	private double seuilTrace = 1e-3;
+	
+	/**
+	 * The traced pairs, in no particular order: the pair j is (etatsTrace[j], actionsTrace[j]), of trace traces[j].
+	 */
+	private Etat[] etatsTrace = new Etat[16];
+	private Action[] actionsTrace = new Action[16];
+	private double[] traces = new double[16];
+	private int nbTraces = 0;
+	
+	/**
+	 * @param alpha
+	 * @param gamma
+	 * @param lambda The trace decay, in [0 ; 1] (0: one-step Q-learning).
+	 * @param _env
+	 */
+	public QLambdaAgent(double alpha, double gamma, double lambda, Environnement _env) {
+		this(alpha, gamma, lambda, _env, new QTableHashMap());
+	}
+	
+	/**
+	 * @param alpha
+	 * @param gamma
+	 * @param lambda The trace decay, in [0 ; 1] (0: one-step Q-learning).
+	 * @param _env
+	 * @param qvaleurs table des Q valeurs, par ex. {@link QTableArray} pour un grand nombre d'etats
+	 */
+	public QLambdaAgent(double alpha, double gamma, double lambda, Environnement _env, QTable qvaleurs) {
+		super(alpha, gamma, _env, qvaleurs);
+		setLambda(lambda);
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * delta = reward + actualisation * V(esuivant) - Q(e,a), puis Q(e',a') += alpha * delta * trace(e',a') pour chaque couple
+	 * trace, (e,a) compris.
+	 */
+	@Override
+	public void endStep(Etat e, Action a, Etat esuivant, double reward, double actualisation) {
+		if (RLAgent.DISPRL)
+			System.out.println("Q(lambda) mise a jour etat=" + e + ", action=" + a + ", etat'=" + esuivant + ", r=" + reward);
+		
+		double delta = reward + actualisation * getValeur(esuivant) - getQValeur(e, a);
+		marque(e, a);
+		
+		double decroissance = getGamma() * lambda;
+		double correction = getAlpha() * delta;
+		int j = 0;
+		while (j < nbTraces) {
+			if (correction != 0.)
+				setQValeur(etatsTrace[j], actionsTrace[j], getQValeur(etatsTrace[j], actionsTrace[j]) + correction * traces[j]);
+			
+			traces[j] *= decroissance;
+			if (traces[j] < seuilTrace)
+				retire(j);
+			else
+				j++;
+		}
+	}
+	
+	/**
+	 * Set the trace of (e,a) to 1, adding the pair if it is not traced yet.
+	 */
+	private void marque(Etat e, Action a) {
+		for (int j = 0; j < nbTraces; j++) {
+			if (actionsTrace[j] == a && (etatsTrace[j] == e || etatsTrace[j].equals(e))) {
+				traces[j] = 1.;
+				return;
+			}
+		}
+		
+		if (nbTraces == traces.length) {
+			etatsTrace = Arrays.copyOf(etatsTrace, 2 * nbTraces);
+			actionsTrace = Arrays.copyOf(actionsTrace, 2 * nbTraces);
+			traces = Arrays.copyOf(traces, 2 * nbTraces);
+		}
+		etatsTrace[nbTraces] = e;
+		actionsTrace[nbTraces] = a;
+		traces[nbTraces] = 1.;
+		nbTraces++;
+	}
+	
+	/**
+	 * Remove the pair j, replaced by the last one.
+	 */
+	private void retire(int j) {
+		nbTraces--;
+		etatsTrace[j] = etatsTrace[nbTraces];
+		actionsTrace[j] = actionsTrace[nbTraces];
+		traces[j] = traces[nbTraces];
+		etatsTrace[nbTraces] = null;
+		actionsTrace[nbTraces] = null;
+	}
+	
+	/**
+	 * Remove all the traces.
+	 */
+	protected void effaceTraces() {
+		Arrays.fill(etatsTrace, 0, nbTraces, null);
+		Arrays.fill(actionsTrace, 0, nbTraces, null);
+		nbTraces = 0;
+	}
+	
+	/**
+	 * The traces are cut if the chosen action is not greedy.
+	 */
+	@Override
+	public Action getAction(Etat e) {
+		Action a = super.getAction(e);
+		if (a != null && nbTraces > 0 && getQValeur(e, a) < getValeur(e))
+			effaceTraces();
+		
+		return a;
+	}
+	
+	@Override
+	public void startEpisode() {
+		super.startEpisode();
+		effaceTraces();
+	}
+	
+	@Override
+	public void reset() {
+		effaceTraces();
+		super.reset();
+	}
+	
+	/* GETTERS & SETTERS */
+	
+	/**
+	 * The traces already mix the returns of all lengths, and decay with gamma * lambda at each step: only one-step
+	 * updates are supported.
+	 * @throws IllegalArgumentException if nbPasCible is not 1.
+	 */
+	@Override
+	public void setNbPasCible(int nbPasCible) {
+		if (nbPasCible != 1)
+			throw new IllegalArgumentException("Q(lambda) only does one-step updates (given: " + nbPasCible + " steps)");
+		
+		super.setNbPasCible(nbPasCible);
+	}
+	
+	public double getLambda() {
+		return lambda;
+	}
+	
+	public void setLambda(double lambda) {
+		if (lambda < 0. || lambda > 1.)
+			throw new IllegalArgumentException("lambda must be in [0 ; 1] (given: " + lambda + ")");
+		
+		this.lambda = lambda;
+	}
+	
+	public double getSeuilTrace() {
+		return seuilTrace;
+	}
+	
+	/**
+	 * @param seuilTrace The threshold under which a trace is dropped, in ]0 ; 1].
+	 */
+	public void setSeuilTrace(double seuilTrace) {
+		if (!(seuilTrace > 0.) || seuilTrace > 1.)
+			throw new IllegalArgumentException("The trace threshold must be in ]0 ; 1] (given: " + seuilTrace + ")");
+		
+		this.seuilTrace = seuilTrace;
+	}
+	
+	/**
+	 * @return Return the number of pairs currently traced.
+	 */
+	public int getNbTraces() {
+		return nbTraces;
+	}
+}
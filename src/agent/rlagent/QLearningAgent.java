@@ -1,11 +1,8 @@
 package agent.rlagent;
 
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
 
-import javafx.util.Pair;
 import environnement.Action;
 import environnement.Environnement;
 import environnement.Etat;
@@ -19,10 +16,18 @@ public class QLearningAgent extends RLAgent {
 	/**
 	 * format de memorisation des Q valeurs: utiliser partout setQValeur car cette methode notifie la vue
 	 */
-	protected HashMap<Etat, HashMap<Action, Double>> qvaleurs;
+	protected QTable qvaleurs;
 	
-	//AU CHOIX: vous pouvez utiliser une Map avec des Pair pour clés si vous préférez
-	//protected HashMap<Pair<Etat,Action>,Double> qvaleurs;
+	/**
+	 * vrai si vmin ou vmax a ete ecrase par setQValeur: ils sont recalcules a partir de la table a la prochaine lecture
+	 */
+	private boolean vminVmaxARecalculer = false;
+	
+	/**
+	 * setQValeur ne notifie les observateurs (la vue) que toutes les periodeNotification mises a jour
+	 */
+	protected int periodeNotification = 1;
+	private int nbMisesAJourNonNotifiees = 0;
 	
 	/**
 	 * @param alpha
@@ -30,8 +35,19 @@ public class QLearningAgent extends RLAgent {
 	 * @param _env
 	 */
 	public QLearningAgent(double alpha, double gamma, Environnement _env) {
+		this(alpha, gamma, _env, new QTableHashMap());
+	}
+	
+	/**
+	 * @param alpha
+	 * @param gamma
+	 * @param _env
+	 * @param qvaleurs table des Q valeurs, par ex. {@link QTableArray} pour un grand nombre d'etats, ou null pour une
+	 *                 sous-classe qui ne memorise pas Q dans une table (par ex. approximation lineaire)
+	 */
+	public QLearningAgent(double alpha, double gamma, Environnement _env, QTable qvaleurs) {
 		super(alpha, gamma, _env);
-		qvaleurs = new HashMap<>();
+		this.qvaleurs = qvaleurs;
 	}
 	
 	/**
@@ -43,107 +59,87 @@ public class QLearningAgent extends RLAgent {
 	public List<Action> getPolitique(Etat e) {
 		// retourne action de meilleures valeurs dans e selon Q : utiliser getQValeur()
 		// retourne liste vide si aucune action legale (etat terminal)
-		List<Action> actions = new ArrayList<>();
+		List<Action> actions = this.getActionsLegales(e);
 		
-		if (this.getActionsLegales(e).size() == 0) {//etat  absorbant; impossible de le verifier via environnement
+		if (actions.size() == 0) {//etat  absorbant; impossible de le verifier via environnement
 			System.out.println("aucune action legale");
-			return actions;
+			return new ArrayList<>();
 		}
 		
 		// VOTRE CODE
-		double max = Double.NEGATIVE_INFINITY;
-		double current;
-		
-		for (Action a : env.getActionsPossibles(e)) {
-			current = getQValeur(e, a);
-			
-			if (max < current) {
-				actions.clear();
-				max = current;
-				actions.add(a);
-			}
-			else if (max == current)
-				actions.add(a);
-		}
-		
-		return actions;
+		return qvaleurs.getPolitique(e, actions);
 	}
 	
 	@Override
 	public double getValeur(Etat e) {
 		// VOTRE CODE
-		
-		List<Action> actions = env.getActionsPossibles(e);
-		if (actions.isEmpty())
-			return 0.;
-		
-		double max = Double.NEGATIVE_INFINITY;
-		double current;
-		
-		// For all action in `submap` (given by e1)
-		for (Action a : actions) {
-			current = getQValeur(e, a);
-			if (max < current)
-				max = current;
-		}
-		
-		return max;
+		return qvaleurs.getValeur(e, env.getActionsPossibles(e));
 	}
 	
 	@Override
 	public double getQValeur(Etat e, Action a) {
 		// VOTRE CODE
-		if (qvaleurs.getOrDefault(e, null) == null)
-			qvaleurs.put(e, new HashMap<>());
-		
-		if (qvaleurs.getOrDefault(e, null) == null)
-			throw new NullPointerException("The hashcode of the state is not valid: The program cannot use the instance as key in a HashMap.\n\tClass: " + e.getClass().getSimpleName() + "\n\tHash code: " + e.hashCode());
-		
-		if (!qvaleurs.get(e).containsKey(a)) {
-			qvaleurs.get(e).put(a, 0.);
-			return 0.;
-		}
-		
-		return qvaleurs.get(e).get(a);
+		return qvaleurs.getQValeur(e, a);
 	}
 	
 	@Override
 	public void setQValeur(Etat e, Action a, double d) {
 		// VOTRE CODE
-		
-		// Get the sub-hashmap within qvaleurs(e). If it does not exist, instantiate it
-		HashMap<Action, Double> submap = qvaleurs.getOrDefault(e, new HashMap<>());
-		
-		// Add the new value
-		submap.put(a, d);
+		double old = qvaleurs.getQValeur(e, a);
+		qvaleurs.setQValeur(e, a, d);
 		
 		// mise a jour vmax et vmin pour affichage du gradient de couleur:
 		// vmax est la valeur de max pour tout s de V
 		// vmin est la valeur de min pour tout s de V
-		this.vmin = this.vmax = 0;
+		// (vmin <= 0 <= vmax). Si l'extremum courant est ecrase par une valeur moins extreme, il est recalcule plus tard.
+		if (d < this.vmin)
+			this.vmin = d;
+		else if (old < 0 && old == this.vmin && d > old)
+			vminVmaxARecalculer = true;
+		
+		if (d > this.vmax)
+			this.vmax = d;
+		else if (old > 0 && old == this.vmax && d < old)
+			vminVmaxARecalculer = true;
+		
+		notifyMiseAJour();
+	}
+	
+	/**
+	 * Notifie les observateurs d'une mise a jour de Q, au plus une fois toutes les {@link #periodeNotification} mises a
+	 * jour, et jamais si l'agent n'est pas observe.
+	 */
+	protected void notifyMiseAJour() {
+		if (this.countObservers() == 0)
+			return;
 		
-		// For all state in `qvaleurs`
-		for (Etat e1 : qvaleurs.keySet()) {
-			// Iterate over the action on the given submap
-			submap = qvaleurs.get(e1);
-			
-			// For all action in `submap` (given by e1)
-			for (Action a1 : submap.keySet()) {
-				// If the given key leads to a null value, delete it
-				if (submap.getOrDefault(a1, null) == null)
-					submap.remove(a1);
-				// Else, compare to vmin and vmax
-				else {
-					if (submap.get(a1) < this.vmin)
-						this.vmin = submap.get(a1);
-					
-					if (submap.get(a1) > this.vmax)
-						this.vmax = submap.get(a1);
-				}
-			}
+		if (++nbMisesAJourNonNotifiees >= periodeNotification) {
+			nbMisesAJourNonNotifiees = 0;
+			this.notifyObs();
 		}
-		
-		this.notifyObs();
+	}
+	
+	/**
+	 * Recalcule vmin et vmax a partir de la table si necessaire.
+	 */
+	private void recalculeVminVmax() {
+		if (vminVmaxARecalculer && qvaleurs != null) {
+			vminVmaxARecalculer = false;
+			this.vmin = Math.min(0, qvaleurs.getQValeurMin());
+			this.vmax = Math.max(0, qvaleurs.getQValeurMax());
+		}
+	}
+	
+	@Override
+	public double getVmin() {
+		recalculeVminVmax();
+		return super.getVmin();
+	}
+	
+	@Override
+	public double getVmax() {
+		recalculeVminVmax();
+		return super.getVmax();
 	}
 	
 	/**
@@ -153,22 +149,30 @@ public class QLearningAgent extends RLAgent {
 	 * @param a
 	 * @param esuivant
 	 * @param reward
+	 * @param actualisation
 	 */
 	@Override
-	public void endStep(Etat e, Action a, Etat esuivant, double reward) {
+	public void endStep(Etat e, Action a, Etat esuivant, double reward, double actualisation) {
 		if (RLAgent.DISPRL)
 			System.out.println("QL mise a jour etat=" + e + ", action=" + a + ", etat'=" + esuivant + ", r=" + reward);
 		
 		// VOTRE CODE
-		setQValeur(e, a, (1 - getAlpha()) * getQValeur(e, a) + getAlpha() * (reward + getGamma() * getValeur(esuivant)));
+		setQValeur(e, a, (1 - getAlpha()) * getQValeur(e, a) + getAlpha() * (reward + actualisation * getValeur(esuivant)));
 	}
 	
 	@Override
 	public void endEpisode() {
+		// The view is up to date at the end of each episode
+		if (nbMisesAJourNonNotifiees > 0) {
+			nbMisesAJourNonNotifiees = 0;
+			this.notifyObs();
+		}
+		
 		super.endEpisode();
 		System.out.print("\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b\b");
 		System.out.flush();
-		System.out.println("Number of states: " + qvaleurs.keySet().size());
+		if (qvaleurs != null)
+			System.out.println("Number of states: " + qvaleurs.getNbEtats());
 	}
 	
 	@Override
@@ -182,9 +186,38 @@ public class QLearningAgent extends RLAgent {
 		super.reset();
 		// VOTRE CODE
 		
-		qvaleurs.clear();
+		if (qvaleurs != null)
+			qvaleurs.clear();
+		this.vmin = this.vmax = 0;
+		vminVmaxARecalculer = false;
+		nbMisesAJourNonNotifiees = 0;
 		
 		this.episodeNb = 0;
 		this.notifyObs();
 	}
+	
+	public QTable getQvaleurs() {
+		return qvaleurs;
+	}
+	
+	public void setQvaleurs(QTable qvaleurs) {
+		this.qvaleurs = qvaleurs;
+		this.vmin = this.vmax = 0;
+		vminVmaxARecalculer = true;
+	}
+	
+	public int getPeriodeNotification() {
+		return periodeNotification;
+	}
+	
+	/**
+	 * @param periodeNotification nombre de mises a jour de Q entre deux notifications de la vue (1 pour notifier a chaque
+	 * mise a jour)
+	 */
+	public void setPeriodeNotification(int periodeNotification) {
+		if (periodeNotification < 1)
+			throw new IllegalArgumentException("The notification period must be strictly positive (given: " + periodeNotification + ")");
+		
+		this.periodeNotification = periodeNotification;
+	}
 }
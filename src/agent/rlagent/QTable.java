@@ -0,0 +1,67 @@
+package agent.rlagent;
+
+import environnement.Action;
+import environnement.Etat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Stockage des Q-valeurs d'un {@link QLearningAgent}. Une Q-valeur jamais mise a jour vaut 0.
+ * <p>
+ * Les methodes qui parcourent les actions d'un etat prennent en parametre la liste des actions legales, car la table ne
+ * connait pas l'environnement.
+ */
+public interface QTable {
+	
+	/**
+	 * @param e The state.
+	 * @param a The action.
+	 * @return Return Q(e,a), or 0 if it has never been set.
+	 */
+	double getQValeur(@NotNull Etat e, @NotNull Action a);
+	
+	/**
+	 * Set Q(e,a) to `d`.
+	 * @param e The state.
+	 * @param a The action.
+	 * @param d The new value.
+	 */
+	void setQValeur(@NotNull Etat e, @NotNull Action a, double d);
+	
+	/**
+	 * @param e The state.
+	 * @param actions The legal actions in `e`.
+	 * @return Return max_a Q(e,a) over `actions`, or 0 if `actions` is empty.
+	 */
+	double getValeur(@NotNull Etat e, @NotNull List<Action> actions);
+	
+	/**
+	 * @param e The state.
+	 * @param actions The legal actions in `e`.
+	 * @return Return the action(s) of `actions` with the highest Q-value (ties are all kept), or an empty list if
+	 * `actions` is empty.
+	 */
+	@NotNull
+	List<Action> getPolitique(@NotNull Etat e, @NotNull List<Action> actions);
+	
+	/**
+	 * @return Return the lowest Q-value stored in the table, or 0 if the table is empty.
+	 */
+	double getQValeurMin();
+	
+	/**
+	 * @return Return the highest Q-value stored in the table, or 0 if the table is empty.
+	 */
+	double getQValeurMax();
+	
+	/**
+	 * @return Return the number of states stored in the table.
+	 */
+	int getNbEtats();
+	
+	/**
+	 * Remove all the Q-values.
+	 */
+	void clear();
+}
@@ -0,0 +1,308 @@
+package agent.rlagent;
+
+import environnement.Action;
+import environnement.Etat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Table des Q-valeurs dans un tableau primitif: chaque etat recoit un indice entier la premiere fois qu'une de ses
+ * Q-valeurs est modifiee, et Q(e,a) est stocke dans la case indice(e) * nbActions + a.ordinal().
+ * <p>
+ * Une lecture ne modifie pas la table (un etat inconnu a des Q-valeurs nulles), et la recherche du maximum sur les
+ * actions d'un etat parcourt une seule ligne du tableau.
+ * <p>
+ * Le nombre d'actions (la largeur d'une ligne) est donne au constructeur, ou pris a la premiere ecriture: c'est alors le
+ * nombre de valeurs de l'enum de l'action ecrite (par ex. 4 pour le crawler, 6 pour {@link environnement.Action2D}).
+ * <p>
+ * Les etats {@link EtatCodable} sont indexes par leur code, dans une table de hachage de long: la table ne garde alors
+ * aucune reference vers ces etats.
+ */
+public class QTableArray implements QTable {
+	
+	/**
+	 * Number of states added each time the table is full.
+	 */
+	private static final int CHUNK = 1024;
+	/**
+	 * Initial number of slots of the table of codes (a power of 2).
+	 */
+	private static final int CAPACITE_CODES = 16;
+	
+	/**
+	 * Width of a row: the ordinal of every action must be lower than this value. 0 until the first write if it is taken
+	 * from the actions.
+	 */
+	private int nbActions;
+	
+	/**
+	 * Maps a state to its row.
+	 */
+	private final HashMap<Etat, Integer> indexes = new HashMap<>();
+	/**
+	 * Maps the code of an {@link EtatCodable} to its row.
+	 */
+	private final IndexCodes indexesCodes = new IndexCodes();
+	
+	private double[] qvaleurs;
+	
+	/**
+	 * @param nbActions The number of actions, i.e. an upper bound of {@link Action#ordinal()}.
+	 */
+	public QTableArray(int nbActions) {
+		if (nbActions < 1)
+			throw new IllegalArgumentException("The number of actions must be strictly positive (given: " + nbActions + ")");
+		
+		this.nbActions = nbActions;
+		// Allocated with the first state, as many tables may be created (e.g. one per stripe of QTableConcurrente)
+		this.qvaleurs = new double[0];
+	}
+	/**
+	 * Create a table whose number of actions is the number of values of the enum of the first action written.
+	 */
+	public QTableArray() {
+		this.nbActions = 0;
+		this.qvaleurs = new double[0];
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * @param e The state.
+	 * @return Return the index of the first cell of the row of `e`, or -1 if `e` is not in the table.
+	 */
+	private int getRow(@NotNull Etat e) {
+		if (e instanceof EtatCodable) {
+			int index = indexesCodes.get(((EtatCodable) e).getCode());
+			return index == -1 ? -1 : index * nbActions;
+		}
+		
+		Integer index = indexes.get(e);
+		return index == null ? -1 : index * nbActions;
+	}
+	
+	/**
+	 * @param e The state.
+	 * @return Return the index of the first cell of the row of `e`. A new row is added if `e` is not in the table.
+	 */
+	private int getOrCreateRow(@NotNull Etat e, @NotNull Action a) {
+		if (nbActions == 0)
+			nbActions = getNbActions(a);
+		
+		int row = getRow(e);
+		if (row != -1)
+			return row;
+		
+		int index = getNbEtats();
+		if (e instanceof EtatCodable)
+			indexesCodes.put(((EtatCodable) e).getCode(), index);
+		else
+			indexes.put(e, index);
+		
+		if ((index + 1) * nbActions > qvaleurs.length)
+			qvaleurs = Arrays.copyOf(qvaleurs, qvaleurs.length + CHUNK * nbActions);
+		
+		return index * nbActions;
+	}
+	
+	/**
+	 * @param a An action of an enum.
+	 * @return Return the number of values of the enum of `a`.
+	 */
+	private static int getNbActions(@NotNull Action a) {
+		if (!(a instanceof Enum))
+			throw new IllegalArgumentException("The number of actions cannot be taken from " + a + ", which is not an enum: give it to the constructor");
+		
+		return ((Enum<?>) a).getDeclaringClass().getEnumConstants().length;
+	}
+	
+	private int getColumn(@NotNull Action a) {
+		int column = a.ordinal();
+		if (column < 0 || column >= nbActions)
+			throw new IllegalArgumentException("The ordinal of the action " + a + " is out of the table (" + nbActions + " actions)");
+		
+		return column;
+	}
+	
+	@Override
+	public double getQValeur(@NotNull Etat e, @NotNull Action a) {
+		int row = getRow(e);
+		return row == -1 ? 0. : qvaleurs[row + getColumn(a)];
+	}
+	
+	@Override
+	public void setQValeur(@NotNull Etat e, @NotNull Action a, double d) {
+		// The row first: adding it may replace the array
+		int cell = getOrCreateRow(e, a) + getColumn(a);
+		qvaleurs[cell] = d;
+	}
+	
+	@Override
+	public double getValeur(@NotNull Etat e, @NotNull List<Action> actions) {
+		if (actions.isEmpty())
+			return 0.;
+		
+		int row = getRow(e);
+		if (row == -1)
+			return 0.;
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (int i = 0, size = actions.size(); i < size; i++) {
+			double current = qvaleurs[row + getColumn(actions.get(i))];
+			if (max < current)
+				max = current;
+		}
+		
+		return max;
+	}
+	
+	@NotNull
+	@Override
+	public List<Action> getPolitique(@NotNull Etat e, @NotNull List<Action> actions) {
+		int row = getRow(e);
+		if (row == -1)
+			// All the Q-values are 0
+			return new ArrayList<>(actions);
+		
+		List<Action> returnActions = new ArrayList<>();
+		double max = Double.NEGATIVE_INFINITY;
+		
+		for (int i = 0, size = actions.size(); i < size; i++) {
+			Action a = actions.get(i);
+			double current = qvaleurs[row + getColumn(a)];
+			if (max < current) {
+				returnActions.clear();
+				max = current;
+				returnActions.add(a);
+			}
+			else if (max == current)
+				returnActions.add(a);
+		}
+		
+		return returnActions;
+	}
+	
+	/**
+	 * The cells of the actions that have never been set are 0, and are taken into account.
+	 */
+	@Override
+	public double getQValeurMin() {
+		double min = 0.;
+		for (int i = 0, end = getNbEtats() * nbActions; i < end; i++)
+			if (min > qvaleurs[i])
+				min = qvaleurs[i];
+		
+		return min;
+	}
+	
+	/**
+	 * The cells of the actions that have never been set are 0, and are taken into account.
+	 */
+	@Override
+	public double getQValeurMax() {
+		double max = 0.;
+		for (int i = 0, end = getNbEtats() * nbActions; i < end; i++)
+			if (max < qvaleurs[i])
+				max = qvaleurs[i];
+		
+		return max;
+	}
+	
+	@Override
+	public int getNbEtats() {
+		return indexes.size() + indexesCodes.size();
+	}
+	
+	@Override
+	public void clear() {
+		indexes.clear();
+		indexesCodes.clear();
+		qvaleurs = new double[0];
+	}
+	
+	/**
+	 * @return Return the width of a row, or 0 if it is taken from the first action written and nothing has been written.
+	 */
+	public int getNbActions() {
+		return nbActions;
+	}
+	
+	/**
+	 * Hash table from long codes to positive ints, with open addressing (linear probing) in two primitive arrays.
+	 */
+	private static class IndexCodes {
+		private long[] cles = new long[CAPACITE_CODES];
+		/**
+		 * valeurs[i] is the value of cles[i], or -1 if the slot i is free.
+		 */
+		private int[] valeurs = new int[CAPACITE_CODES];
+		private int taille = 0;
+		
+		private IndexCodes() {
+			Arrays.fill(valeurs, -1);
+		}
+		
+		private static int hash(long code) {
+			// Mix all the bits, as the codes often differ only by a few low bits
+			code *= 0x9E3779B97F4A7C15L;
+			return (int) (code ^ (code >>> 32));
+		}
+		
+		/**
+		 * @return Return the value of `code`, or -1 if it is not in the table.
+		 */
+		private int get(long code) {
+			int masque = cles.length - 1;
+			for (int i = hash(code) & masque; valeurs[i] != -1; i = (i + 1) & masque)
+				if (cles[i] == code)
+					return valeurs[i];
+			
+			return -1;
+		}
+		
+		/**
+		 * Add `code`, which must not be in the table yet.
+		 */
+		private void put(long code, int valeur) {
+			if (2 * (taille + 1) > cles.length)
+				agrandit();
+			
+			int masque = cles.length - 1;
+			int i = hash(code) & masque;
+			while (valeurs[i] != -1)
+				i = (i + 1) & masque;
+			
+			cles[i] = code;
+			valeurs[i] = valeur;
+			taille++;
+		}
+		
+		private void agrandit() {
+			long[] anciennesCles = cles;
+			int[] anciennesValeurs = valeurs;
+			cles = new long[2 * anciennesCles.length];
+			valeurs = new int[2 * anciennesCles.length];
+			Arrays.fill(valeurs, -1);
+			taille = 0;
+			
+			for (int i = 0; i < anciennesCles.length; i++)
+				if (anciennesValeurs[i] != -1)
+					put(anciennesCles[i], anciennesValeurs[i]);
+		}
+		
+		private int size() {
+			return taille;
+		}
+		
+		private void clear() {
+			cles = new long[CAPACITE_CODES];
+			valeurs = new int[CAPACITE_CODES];
+			Arrays.fill(valeurs, -1);
+			taille = 0;
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package agent.rlagent;
+
+import environnement.Action;
+import environnement.Etat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Table des Q-valeurs utilisable par plusieurs threads en meme temps: les etats sont repartis selon leur hashCode entre
+ * plusieurs {@link QTableArray}, chacune protegee par son propre verrou lecture/ecriture. Deux threads qui mettent a
+ * jour des etats de tables differentes ne s'attendent pas, et les lectures (par ex. la vue) peuvent avoir lieu pendant
+ * l'apprentissage. Plusieurs lectures d'une meme table peuvent avoir lieu en meme temps, car une lecture ne modifie pas
+ * une {@link QTableArray} (ce qui n'est pas le cas de {@link QTableHashMap}, qui ajoute les couples lus).
+ * <p>
+ * Pour apprendre sur plusieurs coeurs, chaque thread a son propre {@link QLearningAgent} et son propre environnement,
+ * et tous les agents sont construits avec la meme table. Chaque methode est atomique, mais la mise a jour de Q-learning
+ * (lecture puis ecriture de Q(e,a)) ne l'est pas: si deux threads mettent a jour le meme couple en meme temps, la
+ * derniere ecriture l'emporte.
+ */
+public class QTableConcurrente implements QTable {
+	
+	/**
+	 * Default number of stripes.
+	 */
+	public static final int NB_PARTIES = 64;
+	
+	private final QTableArray[] parties;
+	private final ReadWriteLock[] verrous;
+	/**
+	 * The number of stripes minus 1 (the number of stripes is a power of 2).
+	 */
+	private final int masque;
+	
+	/**
+	 * @param nbParties The number of stripes, rounded up to a power of 2.
+	 * @param fabrique Creates the table of each stripe. The tables are only accessed while holding the lock of their
+	 *                 stripe.
+	 */
+	public QTableConcurrente(int nbParties, @NotNull Supplier<? extends QTableArray> fabrique) {
+		if (nbParties < 1 || nbParties > 1 << 30)
+			throw new IllegalArgumentException("The number of stripes must be between 1 and 2^30 (given: " + nbParties + ")");
+		
+		int n = Integer.highestOneBit(nbParties);
+		if (n < nbParties)
+			n <<= 1;
+		
+		this.parties = new QTableArray[n];
+		this.verrous = new ReadWriteLock[n];
+		this.masque = n - 1;
+		for (int i = 0; i < n; i++) {
+			parties[i] = fabrique.get();
+			verrous[i] = new ReentrantReadWriteLock();
+		}
+	}
+	/**
+	 * Create a table of {@link #NB_PARTIES} {@link QTableArray}. They are allocated as states are added.
+	 */
+	public QTableConcurrente() {
+		this(NB_PARTIES, QTableArray::new);
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * @return Return the index of the stripe of `e`.
+	 */
+	private int getPartie(@NotNull Etat e) {
+		int h = e.hashCode();
+		// Spread the high bits, as in HashMap
+		return (h ^ (h >>> 16)) & masque;
+	}
+	
+	@Override
+	public double getQValeur(@NotNull Etat e, @NotNull Action a) {
+		int p = getPartie(e);
+		Lock verrou = verrous[p].readLock();
+		verrou.lock();
+		try {
+			return parties[p].getQValeur(e, a);
+		} finally {
+			verrou.unlock();
+		}
+	}
+	
+	@Override
+	public void setQValeur(@NotNull Etat e, @NotNull Action a, double d) {
+		int p = getPartie(e);
+		Lock verrou = verrous[p].writeLock();
+		verrou.lock();
+		try {
+			parties[p].setQValeur(e, a, d);
+		} finally {
+			verrou.unlock();
+		}
+	}
+	
+	@Override
+	public double getValeur(@NotNull Etat e, @NotNull List<Action> actions) {
+		int p = getPartie(e);
+		Lock verrou = verrous[p].readLock();
+		verrou.lock();
+		try {
+			return parties[p].getValeur(e, actions);
+		} finally {
+			verrou.unlock();
+		}
+	}
+	
+	@NotNull
+	@Override
+	public List<Action> getPolitique(@NotNull Etat e, @NotNull List<Action> actions) {
+		int p = getPartie(e);
+		Lock verrou = verrous[p].readLock();
+		verrou.lock();
+		try {
+			return parties[p].getPolitique(e, actions);
+		} finally {
+			verrou.unlock();
+		}
+	}
+	
+	/**
+	 * The stripes are read one after the other: the result may mix values written before and after a concurrent update.
+	 */
+	@Override
+	public double getQValeurMin() {
+		double min = 0.;
+		for (int p = 0; p < parties.length; p++) {
+			Lock verrou = verrous[p].readLock();
+			verrou.lock();
+			try {
+				min = Math.min(min, parties[p].getQValeurMin());
+			} finally {
+				verrou.unlock();
+			}
+		}
+		
+		return min;
+	}
+	
+	/**
+	 * The stripes are read one after the other: the result may mix values written before and after a concurrent update.
+	 */
+	@Override
+	public double getQValeurMax() {
+		double max = 0.;
+		for (int p = 0; p < parties.length; p++) {
+			Lock verrou = verrous[p].readLock();
+			verrou.lock();
+			try {
+				max = Math.max(max, parties[p].getQValeurMax());
+			} finally {
+				verrou.unlock();
+			}
+		}
+		
+		return max;
+	}
+	
+	@Override
+	public int getNbEtats() {
+		int nb = 0;
+		for (int p = 0; p < parties.length; p++) {
+			Lock verrou = verrous[p].readLock();
+			verrou.lock();
+			try {
+				nb += parties[p].getNbEtats();
+			} finally {
+				verrou.unlock();
+			}
+		}
+		
+		return nb;
+	}
+	
+	@Override
+	public void clear() {
+		for (int p = 0; p < parties.length; p++) {
+			Lock verrou = verrous[p].writeLock();
+			verrou.lock();
+			try {
+				parties[p].clear();
+			} finally {
+				verrou.unlock();
+			}
+		}
+	}
+	
+	public int getNbParties() {
+		return parties.length;
+	}
+}
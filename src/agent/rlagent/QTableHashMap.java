@@ -0,0 +1,108 @@
+package agent.rlagent;
+
+import environnement.Action;
+import environnement.Etat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Table des Q-valeurs sous forme de {@link HashMap} imbriquees: Q(e,a) = qvaleurs.get(e).get(a).
+ * <p>
+ * C'est le format historique de {@link QLearningAgent}: une lecture ajoute l'etat (et la valeur 0) dans la table.
+ */
+public class QTableHashMap implements QTable {
+	
+	protected HashMap<Etat, HashMap<Action, Double>> qvaleurs = new HashMap<>();
+	
+	@Override
+	public double getQValeur(@NotNull Etat e, @NotNull Action a) {
+		HashMap<Action, Double> submap = qvaleurs.get(e);
+		if (submap == null) {
+			submap = new HashMap<>();
+			qvaleurs.put(e, submap);
+		}
+		
+		Double value = submap.get(a);
+		if (value == null) {
+			submap.put(a, 0.);
+			return 0.;
+		}
+		
+		return value;
+	}
+	
+	@Override
+	public void setQValeur(@NotNull Etat e, @NotNull Action a, double d) {
+		qvaleurs.computeIfAbsent(e, k -> new HashMap<>()).put(a, d);
+	}
+	
+	@Override
+	public double getValeur(@NotNull Etat e, @NotNull List<Action> actions) {
+		if (actions.isEmpty())
+			return 0.;
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (Action a : actions) {
+			double current = getQValeur(e, a);
+			if (max < current)
+				max = current;
+		}
+		
+		return max;
+	}
+	
+	@NotNull
+	@Override
+	public List<Action> getPolitique(@NotNull Etat e, @NotNull List<Action> actions) {
+		List<Action> returnActions = new ArrayList<>();
+		double max = Double.NEGATIVE_INFINITY;
+		
+		for (Action a : actions) {
+			double current = getQValeur(e, a);
+			if (max < current) {
+				returnActions.clear();
+				max = current;
+				returnActions.add(a);
+			}
+			else if (max == current)
+				returnActions.add(a);
+		}
+		
+		return returnActions;
+	}
+	
+	@Override
+	public double getQValeurMin() {
+		double min = Double.POSITIVE_INFINITY;
+		for (HashMap<Action, Double> submap : qvaleurs.values())
+			for (double value : submap.values())
+				if (min > value)
+					min = value;
+		
+		return min == Double.POSITIVE_INFINITY ? 0. : min;
+	}
+	
+	@Override
+	public double getQValeurMax() {
+		double max = Double.NEGATIVE_INFINITY;
+		for (HashMap<Action, Double> submap : qvaleurs.values())
+			for (double value : submap.values())
+				if (max < value)
+					max = value;
+		
+		return max == Double.NEGATIVE_INFINITY ? 0. : max;
+	}
+	
+	@Override
+	public int getNbEtats() {
+		return qvaleurs.size();
+	}
+	
+	@Override
+	public void clear() {
+		qvaleurs.clear();
+	}
+}
@@ -1,9 +1,11 @@
 package agent.rlagent;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Observable;
 import java.util.Observer;
 
+import agent.RandomProvider;
 import agent.ValueAgent;
 import agent.strategy.StrategyExploration;
 import agent.strategy.StrategyGreedy;
@@ -47,6 +49,29 @@ public abstract class RLAgent extends ValueAgent implements IRLAgent,Observer{
 	 */
 	protected double sumrecepisode = 0.0;
 	
+	/**
+	 * Nombre de pas n des cibles de mise a jour (1: mise a jour a chaque pas, sans fenetre). Avec n > 1, les transitions
+	 * sont gardees dans une fenetre circulaire, et la transition du pas t est transmise a endStep lorsque celle du pas
+	 * t+n-1 est connue, sous la forme (e_t, a_t, e_t+n, r_t + gamma r_t+1 + ... + gamma^(n-1) r_t+n-1) avec le facteur
+	 * d'actualisation gamma^n (voir {@link #endStep(Etat, Action, Etat, double, double)}): la cible calculee par endStep
+	 * est alors la cible a n pas. En fin d'episode les transitions restantes sont transmises avec des cibles plus
+	 * courtes (voir {@link #videFenetre(Etat)}).
+	 */
+	private int nbPasCible = 1;
+	private Etat[] etatsFenetre = new Etat[0];
+	private Action[] actionsFenetre = new Action[0];
+	private double[] recompensesFenetre = new double[0];
+	/**
+	 * The oldest transition of the window is at debutFenetre.
+	 */
+	private int debutFenetre = 0;
+	private int tailleFenetre = 0;
+	
+	/**
+	 * Le dernier etat atteint s'il est absorbant, null sinon (l'environnement ne sait le dire que pour son etat courant).
+	 */
+	private Etat etatAbsorbant = null;
+	
 	public static boolean DISPRL = false;
 	
 	public static boolean DISPETAT = false;
@@ -75,6 +100,7 @@ public abstract class RLAgent extends ValueAgent implements IRLAgent,Observer{
 		super();
 		this.alpha = alpha;
 		this.gamma = gamma;
+		this.rand = RandomProvider.getRandom();
 		
 		this.stratExplorationManuel = new StrategyManuel(this);
 	//	RLAgent.stratExplorationManuel.setAgent(this);
@@ -100,10 +126,13 @@ public abstract class RLAgent extends ValueAgent implements IRLAgent,Observer{
 		this.etatPrec = env.getEtatCourant();
 		this.actionChoisie = null;
 		this.nbpasparepisode = 0;
+		this.etatAbsorbant = null;
 		this.sumrecepisode = 0.0;
+		effaceFenetre();
 	}
 	@Override 
 	public void endEpisode(){
+		videFenetre(this.etatPrec);//episode tronque: les dernieres transitions n'ont pas encore ete transmises
 		super.endEpisode();
 		if (DISPEPISODE)
 			System.out.println("somme recompenses de l'episode "+this.getSumrecepisode());
@@ -142,6 +171,13 @@ public abstract class RLAgent extends ValueAgent implements IRLAgent,Observer{
 	public void runOneStep(){
 		this.nbpasparepisode ++;
 		Etat etat= env.getEtatCourant();
+		//si l'environnement n'a pas change d'etat depuis la derniere mise a jour, reprend la meme instance que l'etat suivant
+		//de cette mise a jour (les valeurs calculees pour cet etat peuvent etre reutilisees); sinon (reset ou setEtatCourant
+		//externe) l'etat courant remplace etatPrec
+		if (etat == this.etatPrec || etat.equals(this.etatPrec))
+			etat = this.etatPrec;
+		else
+			this.etatPrec = etat;
 		Action act = this.getAction(etat);	//modif de etat courant de environnement
 		env.doAction(act) ; //env notifie son observateur (agent) de la recompense et fait alors update dans lequel endStep
 		if (DISPETAT && etat instanceof EtatPacmanMDPClassic)
@@ -171,7 +207,20 @@ public abstract class RLAgent extends ValueAgent implements IRLAgent,Observer{
 	 * @param esuivant
 	 * @param reward
 	 */
-	public abstract void endStep(Etat e, Action a, Etat esuivant, double reward);
+	public void endStep(Etat e, Action a, Etat esuivant, double reward) {
+		endStep(e, a, esuivant, reward, this.gamma);
+	}
+	
+	/**
+	 * mise a jour du couple etat-valeur (e,a) avec la cible reward + actualisation * V(esuivant)
+	 * @param e
+	 * @param a
+	 * @param esuivant
+	 * @param reward
+	 * @param actualisation facteur applique a la valeur de esuivant: gamma pour une transition, gamma^k pour une cible a
+	 *                      k pas (voir nbPasCible)
+	 */
+	public abstract void endStep(Etat e, Action a, Etat esuivant, double reward, double actualisation);
 	
 
 	
@@ -235,11 +284,106 @@ public abstract class RLAgent extends ValueAgent implements IRLAgent,Observer{
 			double reward = (Double)(arg1);
 			this.sumrecepisode += reward;
 			Etat etatnouveau = ((Environnement)(arg0)).getEtatCourant();
-			this.endStep(this.etatPrec, this.actionChoisie, etatnouveau, reward);
+			boolean absorbant = ((Environnement) arg0).estAbsorbant();
+			this.etatAbsorbant = absorbant ? etatnouveau : null;
+			if (nbPasCible == 1)
+				this.endStep(this.etatPrec, this.actionChoisie, etatnouveau, reward);
+			else {
+				ajouteFenetre(this.etatPrec, this.actionChoisie, reward, etatnouveau);
+				if (absorbant)
+					videFenetre(etatnouveau);
+			}
 			this.etatPrec =etatnouveau  ;
 		}
 	}
 	
+	/**
+	 * @param e The next state of a transition given to endStep.
+	 * @return Return true if `e` is the absorbing state that ended the episode. Unlike `env.estAbsorbant()`, the
+	 * answer does not depend on when it is asked: with n-step targets, `e` is not always the current state.
+	 */
+	protected boolean estAbsorbant(Etat e) {
+		return e != null && e == etatAbsorbant;
+	}
+	
+	/**
+	 * Add a transition to the window. If the window is full, the oldest transition is removed and given to endStep with
+	 * its n-step target.
+	 */
+	private void ajouteFenetre(Etat e, Action a, double reward, Etat etatnouveau) {
+		int fin = (debutFenetre + tailleFenetre) % nbPasCible;
+		etatsFenetre[fin] = e;
+		actionsFenetre[fin] = a;
+		recompensesFenetre[fin] = reward;
+		tailleFenetre++;
+		
+		if (tailleFenetre == nbPasCible)
+			transmetPremiere(etatnouveau);
+	}
+	
+	/**
+	 * Give the oldest transition of the window to endStep, with the target
+	 * r_t + gamma r_t+1 + ... + gamma^(k-1) r_t+k-1 + gamma^k V(etatnouveau), where k is the size of the window.
+	 */
+	private void transmetPremiere(Etat etatnouveau) {
+		double retour = 0.;
+		double facteur = 1.;
+		for (int k = 0; k < tailleFenetre; k++) {
+			retour += facteur * recompensesFenetre[(debutFenetre + k) % nbPasCible];
+			facteur *= gamma;
+		}
+		
+		Etat e = etatsFenetre[debutFenetre];
+		Action a = actionsFenetre[debutFenetre];
+		etatsFenetre[debutFenetre] = null;
+		actionsFenetre[debutFenetre] = null;
+		debutFenetre = (debutFenetre + 1) % nbPasCible;
+		tailleFenetre--;
+		
+		this.endStep(e, a, etatnouveau, retour, facteur);
+	}
+	
+	/**
+	 * Give all the transitions of the window to endStep, bootstrapping from `etatSuivant`: the absorbing state reached
+	 * by the last move (value 0), or the current state when the episode has been truncated (estimated value).
+	 * @param etatSuivant The state following the last transition of the window.
+	 */
+	protected void videFenetre(Etat etatSuivant) {
+		while (tailleFenetre > 0)
+			transmetPremiere(etatSuivant);
+	}
+	
+	/**
+	 * Remove the transitions of the window without using them.
+	 */
+	private void effaceFenetre() {
+		Arrays.fill(etatsFenetre, null);
+		Arrays.fill(actionsFenetre, null);
+		debutFenetre = 0;
+		tailleFenetre = 0;
+	}
+	
+	public int getNbPasCible() {
+		return nbPasCible;
+	}
+	
+	/**
+	 * @param nbPasCible The number of steps n of the targets (1: one-step updates): endStep then receives the discounted
+	 *                   return of n steps, the state reached n steps later and the discount factor gamma^n, which the agent
+	 *                   must use in place of gamma (also in the transitions it stores for replay). The agents with
+	 *                   eligibility traces refuse n > 1. The transitions currently in the window are dropped.
+	 */
+	public void setNbPasCible(int nbPasCible) {
+		if (nbPasCible < 1)
+			throw new IllegalArgumentException("The number of steps must be strictly positive (given: " + nbPasCible + ")");
+		
+		this.nbPasCible = nbPasCible;
+		etatsFenetre = new Etat[nbPasCible];
+		actionsFenetre = new Action[nbPasCible];
+		recompensesFenetre = new double[nbPasCible];
+		effaceFenetre();
+	}
+	
 	@Override
 	public Environnement getEnv() {
 		return this.env;
@@ -18,4 +18,41 @@ public interface FeatureFunction {
 	 * @return vecteur de fonctions caracteristiques pour couple (e,a)
 	 */
 	double[] getFeatures(Etat e, Action a);
+	
+	/**
+	 * Remplit buffer avec le vecteur de fonctions caracteristiques pour couple (e,a), sans allouer de tableau.
+	 * Par defaut, recopie le resultat de {@link #getFeatures(Etat, Action)}.
+	 * @param buffer tableau de taille {@link #getFeatureNb()}
+	 */
+	default void getFeatures(Etat e, Action a, double[] buffer) {
+		System.arraycopy(getFeatures(e, a), 0, buffer, 0, getFeatureNb());
+	}
+	
+	/**
+	 * @return le nombre maximal de fonctions caracteristiques non nulles pour un couple (e,a)
+	 */
+	default int getMaxNonZero() {
+		return getFeatureNb();
+	}
+	
+	/**
+	 * Vecteur de fonctions caracteristiques pour couple (e,a) sous forme creuse: les composantes non nulles sont ecrites
+	 * dans indices et valeurs. Par defaut, parcourt le resultat de {@link #getFeatures(Etat, Action)}.
+	 * @param indices tableau de taille {@link #getMaxNonZero()}, recoit les indices des composantes non nulles
+	 * @param valeurs tableau de taille {@link #getMaxNonZero()}, recoit leurs valeurs
+	 * @return le nombre de composantes non nulles
+	 */
+	default int getFeatures(Etat e, Action a, int[] indices, double[] valeurs) {
+		double[] features = getFeatures(e, a);
+		int nnz = 0;
+		for (int i = 0; i < features.length; i++) {
+			if (features[i] != 0.) {
+				indices[nnz] = i;
+				valeurs[nnz] = features[i];
+				nnz++;
+			}
+		}
+		
+		return nnz;
+	}
 }
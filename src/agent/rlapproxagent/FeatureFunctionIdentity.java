@@ -58,6 +58,32 @@ public class FeatureFunctionIdentity implements FeatureFunction {
 		return features;
 	}
 	
+	@Override
+	public void getFeatures(Etat e, Action a, double[] buffer) {
+		int index = getIndex(e, a);
+		if (index >= nbDim)
+			throw new RuntimeException("Array length: " + nbDim + ", index: " + index, new ArrayIndexOutOfBoundsException(index));
+		
+		Arrays.fill(buffer, 0, nbDim, 0.);
+		buffer[index] = 1;
+	}
+	
+	@Override
+	public int getMaxNonZero() {
+		return 1;
+	}
+	
+	@Override
+	public int getFeatures(Etat e, Action a, int[] indices, double[] valeurs) {
+		int index = getIndex(e, a);
+		if (index >= nbDim)
+			throw new RuntimeException("Array length: " + nbDim + ", index: " + index, new ArrayIndexOutOfBoundsException(index));
+		
+		indices[0] = index;
+		valeurs[0] = 1;
+		return 1;
+	}
+	
 	/**
 	 * Fetch the index where the '1' is in the vector for the given `e` and `a`. If there is no index, generate it such
 	 * that it is unique.
@@ -1,19 +1,15 @@
 package agent.rlapproxagent;
 
-import javafx.util.Pair;
 import pacman.elements.ActionPacman;
 import pacman.elements.MazePacman;
 import pacman.elements.StateAgentPacman;
 import pacman.elements.StateGamePacman;
-import pacman.environnementRL.Distance;
 import environnement.Action;
 import environnement.Etat;
 import pacman.environnementRL.EtatPacmanMDPClassic;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 
-import static pacman.Utils.*;
 /**
  * Vecteur de fonctions caracteristiques pour jeu de pacman: 4 fonctions phi_i(s,a)
  *  
@@ -22,7 +18,7 @@ import static pacman.Utils.*;
  */
 public class FeatureFunctionPacman implements FeatureFunction {
 	
-	private double[] vfeatures;
+	private static final int NBFEATURES = 6;
 	
 	/**
 	 * 5 avec NONE possible pour pacman, 4 sinon
@@ -30,65 +26,96 @@ public class FeatureFunctionPacman implements FeatureFunction {
 	 */
 	private static int NBACTIONS = 4;
 	
-	public FeatureFunctionPacman() {
-		vfeatures = new double[6];
-	}
-
+	public FeatureFunctionPacman() { }
+	
 	@Override
 	public int getFeatureNb() {
-		return vfeatures.length;
+		return NBFEATURES;
 	}
-
+	
 	@Override
 	public double[] getFeatures(Etat e, Action a) {
-		reset();
+		double[] vfeatures = new double[NBFEATURES];
+		getFeatures(e, a, vfeatures);
+		return vfeatures;
+	}
+	
+	/**
+	 * All the features are stored, even if they are null: the vector is small.
+	 */
+	@Override
+	public int getFeatures(Etat e, Action a, int[] indices, double[] valeurs) {
+		getFeatures(e, a, valeurs);
+		for (int i = 0; i < NBFEATURES; i++)
+			indices[i] = i;
+		
+		return NBFEATURES;
+	}
+	
+	@Override
+	public void getFeatures(Etat e, Action a, double[] vfeatures) {
+		Arrays.fill(vfeatures, 0, NBFEATURES, 0.);
 		StateGamePacman state;
 		//EnvironnementPacmanMDPClassic envipacmanmdp = (EnvironnementPacmanMDPClassic) e;
-
+		
 		//calcule pacman resulting position a partir de Etat e
 		if (!(e instanceof StateGamePacman)) {
 			System.out.println("erreur dans FeatureFunctionPacman::getFeatures n'est pas un StateGamePacman");
-			return vfeatures;
+			return;
 		}
 		
 		state = (StateGamePacman) e;
-		StateGamePacman nextState = state.nextStatePacman(new ActionPacman(a.ordinal()));
-		StateAgentPacman pacman= state.getPacmanState(0);
-		ArrayList<StateAgentPacman> ghosts = getGhosts(state);
-		ArrayList<StateAgentPacman> nextGhosts = getGhosts(state);
-		StateAgentPacman nextPacman= state.movePacmanSimu(0, new ActionPacman(a.ordinal()));
+		MazePacman maze = state.getMaze();
+		StateAgentPacman pacman = state.getPacmanState(0);
+		
+		// Position of pacman after the action (same as `state.movePacmanSimu(0, action)`, without copying the agent)
+		ActionPacman action = ActionPacman.get(a.ordinal());
+		int nextX = pacman.getX();
+		int nextY = pacman.getY();
+		if (!maze.isWall(nextX + action.getX(), nextY + action.getY()) && !pacman.isDead()) {
+			nextX += action.getX();
+			nextY += action.getY();
+		}
 		
 		// VOTRE CODE
 		
 		// Bias
 		vfeatures[0] = 1.;
 		
+		// Ghosts (the ghosts do not move in the simulation of the action)
+		int nbGhostsOneStep = 0;
+		int nbGhostsInRadius = 0;
+		double closestGhost = Double.MAX_VALUE;
+		for (int i = 0, n = state.getNumberOfGhosts(); i < n; i++) {
+			StateAgentPacman ghost = state.getGhostState(i);
+			int dx = ghost.getX() - nextX;
+			int dy = ghost.getY() - nextY;
+			
+			int manhattan = Math.abs(dx) + Math.abs(dy);
+			if (manhattan <= 1)
+				nbGhostsOneStep++;
+			if (manhattan <= EtatPacmanMDPClassic.TILE_RADIUS_GHOST_DETECTOR)
+				nbGhostsInRadius++;
+			
+			double euclidean = Math.sqrt(dx * dx + dy * dy);
+			if (euclidean < closestGhost)
+				closestGhost = euclidean;
+		}
+		
 		// Number of ghost that can reach pacman in one step at the next iteration
-		vfeatures[1] = getAgentsInRadius(nextPacman, nextGhosts, 1, Distance.MANHATTAN).size();
+		vfeatures[1] = nbGhostsOneStep;
 		
-		// Is there a pacdot in pacman's position at next iteration?
-		ArrayList<StateAgentPacman> foods = convertBooleanArrayToStates(getFoods(state));
-		// Get the closest food and its distance from pacman
-		Pair<StateAgentPacman, Double> closestFoodDistance = getClosestAgent(nextPacman, foods, Distance.MANHATTAN);
-		StateAgentPacman closestFood = closestFoodDistance.getKey();
-		double distancePacdot = closestFoodDistance.getValue();
-		// phi[2] is a boolean
-		vfeatures[2] = distancePacdot == 0 ? 1. : 0.;
+		// Is there a pacdot in pacman's position at next iteration? (phi[2] is a boolean)
+		vfeatures[2] = maze.isFood(nextX, nextY) ? 1. : 0.;
 		
 		// Distance to closest food
-		vfeatures[3] = state.getClosestDot(pacman) / (double) (state.getMaze().getSizeX() + state.getMaze().getSizeY()/* - convertBooleanArrayToStates(getWalls(state)).size() */);
+		vfeatures[3] = state.getClosestDot(pacman) / (double) (maze.getSizeX() + maze.getSizeY()/* - convertBooleanArrayToStates(getWalls(state)).size() */);
 		
 		// Distance to closest ghost
-		vfeatures[4] = getClosestAgent(nextPacman, nextGhosts, Distance.EUCLIDEAN).getValue() / (double) (state.getMaze().getSizeX() * state.getMaze().getSizeY());
+		vfeatures[4] = closestGhost / (double) (maze.getSizeX() * maze.getSizeY());
 		
 		
 		// Number of ghosts in a 3 tile radius
-		vfeatures[5] = getAgentsInRadius(nextPacman, nextGhosts, EtatPacmanMDPClassic.TILE_RADIUS_GHOST_DETECTOR, Distance.MANHATTAN).size();
-		
-		return vfeatures;
-	}
-	
-	public void reset() {
-		Arrays.fill(vfeatures, 0.);
+		vfeatures[5] = nbGhostsInRadius;
 	}
 }
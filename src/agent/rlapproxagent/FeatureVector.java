@@ -0,0 +1,109 @@
+package agent.rlapproxagent;
+
+import environnement.Action;
+import environnement.Etat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Vecteur de fonctions caracteristiques phi(s,a) sous forme creuse: seules les composantes non nulles sont stockees,
+ * sous forme de couples (indice, valeur).
+ * <p>
+ * Les tableaux sont alloues une seule fois (taille {@link FeatureFunction#getMaxNonZero()}) et reutilises a chaque
+ * appel de {@link #fill(FeatureFunction, Etat, Action)}.
+ */
+public class FeatureVector {
+	
+	private int[] indices;
+	private double[] valeurs;
+	
+	/**
+	 * Number of non-zero components, stored in the cells [0 ; nnz[ of `indices` and `valeurs`.
+	 */
+	private int nnz;
+	
+	/**
+	 * @param maxNonZero The maximum number of non-zero components.
+	 */
+	public FeatureVector(int maxNonZero) {
+		indices = new int[maxNonZero];
+		valeurs = new double[maxNonZero];
+		nnz = 0;
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Compute phi(e,a) with `featureFunction` and store it in this vector.
+	 * @param featureFunction The feature function.
+	 * @param e The state.
+	 * @param a The action.
+	 */
+	public void fill(@NotNull FeatureFunction featureFunction, Etat e, Action a) {
+		int max = featureFunction.getMaxNonZero();
+		if (indices.length < max) {
+			indices = new int[max];
+			valeurs = new double[max];
+		}
+		
+		nnz = featureFunction.getFeatures(e, a, indices, valeurs);
+	}
+	
+	/**
+	 * @param weights The weights, indexed by feature.
+	 * @return Return the dot product of this vector and `weights`.
+	 */
+	public double dot(@NotNull double[] weights) {
+		double result = 0.;
+		for (int i = 0; i < nnz; i++)
+			result += valeurs[i] * weights[indices[i]];
+		
+		return result;
+	}
+	
+	/**
+	 * Add `alpha` times this vector to `weights`: only the weights of the non-zero components are modified.
+	 * @param alpha The factor.
+	 * @param weights The weights, indexed by feature.
+	 */
+	public void axpy(double alpha, @NotNull double[] weights) {
+		for (int i = 0; i < nnz; i++)
+			weights[indices[i]] += alpha * valeurs[i];
+	}
+	
+	/**
+	 * @param featureNb The size of the dense vector.
+	 * @return Return this vector as a dense array.
+	 */
+	@NotNull
+	public double[] toArray(int featureNb) {
+		double[] array = new double[featureNb];
+		for (int i = 0; i < nnz; i++)
+			array[indices[i]] += valeurs[i];
+		
+		return array;
+	}
+	
+	/* GETTERS */
+	
+	public int getNnz() {
+		return nnz;
+	}
+	
+	public int getIndice(int i) {
+		return indices[i];
+	}
+	
+	public double getValeur(int i) {
+		return valeurs[i];
+	}
+	
+	@Override
+	public String toString() {
+		return "FeatureVector{" +
+				"indices=" + Arrays.toString(Arrays.copyOf(indices, nnz)) +
+				", valeurs=" + Arrays.toString(Arrays.copyOf(valeurs, nnz)) +
+				'}';
+	}
+}
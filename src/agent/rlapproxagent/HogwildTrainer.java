@@ -0,0 +1,257 @@
+package agent.rlapproxagent;
+
+import agent.RandomProvider;
+import environnement.Environnement;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Apprentissage asynchrone de Q-learning avec approximation lineaire, a la maniere de Hogwild: plusieurs threads ont
+ * chacun leur environnement et leur {@link QLApproxAgent}, mais tous les agents partagent le meme vecteur de poids.
+ * Les mises a jour sont faites sans verrou: deux threads peuvent ecrire le meme poids en meme temps et l'une des deux
+ * corrections est alors perdue, ce qui reste rare et sans consequence lorsque les vecteurs de fonctions
+ * caracteristiques ont peu de composantes.
+ * <p>
+ * Pendant l'apprentissage, la moyenne des sommes des recompenses des episodes termines est mesuree a intervalle
+ * regulier, pour suivre la convergence en fonction du temps ({@link #getMesures()}).
+ * <p>
+ * Chaque worker tire ses nombres aleatoires dans son propre flux ({@link RandomProvider}), dont la graine est tiree dans
+ * l'ordre des workers. Les resultats dependent malgre tout de l'entrelacement des threads, qui n'est pas reproductible.
+ */
+public class HogwildTrainer {
+	
+	/**
+	 * A measure taken during the training.
+	 */
+	public static class Mesure {
+		private final long temps;
+		private final long nbEpisodes;
+		private final double moyenne;
+		
+		private Mesure(long temps, long nbEpisodes, double moyenne) {
+			this.temps = temps;
+			this.nbEpisodes = nbEpisodes;
+			this.moyenne = moyenne;
+		}
+		
+		/**
+		 * @return Return the time since the beginning of the training, in milliseconds.
+		 */
+		public long getTemps() {
+			return temps;
+		}
+		
+		/**
+		 * @return Return the number of episodes finished by all the workers since the beginning of the training.
+		 */
+		public long getNbEpisodes() {
+			return nbEpisodes;
+		}
+		
+		/**
+		 * @return Return the mean sum of rewards of the episodes finished since the previous measure (NaN if none).
+		 */
+		public double getMoyenne() {
+			return moyenne;
+		}
+		
+		@Override
+		public String toString() {
+			return temps + "ms: " + nbEpisodes + " episodes, moyenne " + moyenne;
+		}
+	}
+	
+	private final int nbWorkers;
+	private final Supplier<? extends Environnement> fabriqueEnv;
+	private final Supplier<? extends FeatureFunction> fabriqueFeatures;
+	
+	private double alpha;
+	private double gamma;
+	private double epsilon = 0.05;
+	private int maxnbpasparepisode = 10000;
+	
+	/**
+	 * The weights shared by all the workers.
+	 */
+	private final double[] weights;
+	
+	private final List<Mesure> mesures = new ArrayList<>();
+	
+	/**
+	 * @param nbWorkers The number of threads.
+	 * @param fabriqueEnv Creates the environment of a worker (called once per worker).
+	 * @param fabriqueFeatures Creates the feature function of a worker (called once per worker).
+	 * @param alpha The learning rate of every worker.
+	 * @param gamma The discount factor.
+	 */
+	public HogwildTrainer(int nbWorkers, @NotNull Supplier<? extends Environnement> fabriqueEnv, @NotNull Supplier<? extends FeatureFunction> fabriqueFeatures, double alpha, double gamma) {
+		if (nbWorkers < 1)
+			throw new IllegalArgumentException("The number of workers must be strictly positive (given: " + nbWorkers + ")");
+		
+		this.nbWorkers = nbWorkers;
+		this.fabriqueEnv = fabriqueEnv;
+		this.fabriqueFeatures = fabriqueFeatures;
+		this.alpha = alpha;
+		this.gamma = gamma;
+		this.weights = new double[fabriqueFeatures.get().getFeatureNb()];
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Train the shared weights: each worker runs `nbEpisodes` episodes with an epsilon-greedy strategy. The weights are
+	 * not reset, so the training can be continued with another call.
+	 * @param nbEpisodes The number of episodes of each worker.
+	 * @param periodeMesure The time between two measures, in milliseconds.
+	 * @return Return the shared weights.
+	 * @throws RuntimeException if a worker throws an exception (the other workers are interrupted).
+	 */
+	@SuppressWarnings("deprecation")
+	public double[] run(int nbEpisodes, long periodeMesure) {
+		if (periodeMesure < 1)
+			throw new IllegalArgumentException("The period of the measures must be strictly positive (given: " + periodeMesure + ")");
+		
+		mesures.clear();
+		LongAdder nbEpisodesFinis = new LongAdder();
+		DoubleAdder sommeRecompenses = new DoubleAdder();
+		
+		// The agents are built before the timer starts
+		List<QLApproxAgent> agents = new ArrayList<>(nbWorkers);
+		for (int i = 0; i < nbWorkers; i++) {
+			QLApproxAgent agent = creeAgent(fabriqueEnv.get(), fabriqueFeatures.get());
+			agent.setStratExplorationGreedy(epsilon);
+			agent.addObserver((o, arg) -> {
+				if (arg instanceof Double) {
+					sommeRecompenses.add((Double) arg);
+					nbEpisodesFinis.increment();
+				}
+			});
+			agents.add(agent);
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+		long debut = System.currentTimeMillis();
+		try {
+			List<Future<?>> futures = new ArrayList<>(nbWorkers);
+			for (QLApproxAgent agent : agents) {
+				long graine = RandomProvider.nouvelleGraine();
+				futures.add(executor.submit(() -> {
+					RandomProvider.setGraineThread(graine);
+					agent.runEpisode(nbEpisodes);
+				}));
+			}
+			
+			long nbEpisodesPrec = 0;
+			double sommePrec = 0.;
+			for (Future<?> future : futures) {
+				while (true) {
+					try {
+						future.get(periodeMesure, TimeUnit.MILLISECONDS);
+						break;
+					} catch (TimeoutException ex) {
+						// Take a measure while the workers are running
+					}
+					
+					long nb = nbEpisodesFinis.sum();
+					double somme = sommeRecompenses.sum();
+					mesures.add(new Mesure(System.currentTimeMillis() - debut, nb, (somme - sommePrec) / (nb - nbEpisodesPrec)));
+					nbEpisodesPrec = nb;
+					sommePrec = somme;
+				}
+			}
+			
+			long nb = nbEpisodesFinis.sum();
+			double somme = sommeRecompenses.sum();
+			mesures.add(new Mesure(System.currentTimeMillis() - debut, nb, (somme - sommePrec) / (nb - nbEpisodesPrec)));
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for the workers", ex);
+		} catch (ExecutionException ex) {
+			throw new RuntimeException("A worker failed", ex.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		return weights;
+	}
+	
+	/**
+	 * Create an agent which uses the shared weights, e.g. to evaluate the learned policy.
+	 * @param env The environment of the agent.
+	 * @param featureFunction The feature function of the agent. It must have as many features as the shared weights.
+	 * @return Return the new agent.
+	 */
+	@NotNull
+	public QLApproxAgent creeAgent(@NotNull Environnement env, @NotNull FeatureFunction featureFunction) {
+		if (featureFunction.getFeatureNb() != weights.length)
+			throw new IllegalArgumentException("The feature function has " + featureFunction.getFeatureNb() + " features, the shared weights have " + weights.length + " components");
+		
+		QLApproxAgent agent = new QLApproxAgent(alpha, gamma, env, featureFunction);
+		agent.setWeights(weights);
+		agent.setMaxnbpasparepisode(maxnbpasparepisode);
+		// Only the sums of rewards are read
+		agent.setPeriodeNotification(Integer.MAX_VALUE);
+		return agent;
+	}
+	
+	/* GETTERS & SETTERS */
+	
+	public int getNbWorkers() {
+		return nbWorkers;
+	}
+	
+	public double[] getWeights() {
+		return weights;
+	}
+	
+	/**
+	 * @return Return the measures of the last training.
+	 */
+	public List<Mesure> getMesures() {
+		return Collections.unmodifiableList(mesures);
+	}
+	
+	public double getAlpha() {
+		return alpha;
+	}
+	
+	public void setAlpha(double alpha) {
+		this.alpha = alpha;
+	}
+	
+	public double getGamma() {
+		return gamma;
+	}
+	
+	public void setGamma(double gamma) {
+		this.gamma = gamma;
+	}
+	
+	public double getEpsilon() {
+		return epsilon;
+	}
+	
+	public void setEpsilon(double epsilon) {
+		this.epsilon = epsilon;
+	}
+	
+	public int getMaxnbpasparepisode() {
+		return maxnbpasparepisode;
+	}
+	
+	public void setMaxnbpasparepisode(int maxnbpasparepisode) {
+		this.maxnbpasparepisode = maxnbpasparepisode;
+	}
+}
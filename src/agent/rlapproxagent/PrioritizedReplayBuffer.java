@@ -0,0 +1,141 @@
+package agent.rlapproxagent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Memoire de rejeu prioritaire: une transition est tiree avec une probabilite proportionnelle a (|delta| + epsilon)^alpha,
+ * ou delta est son erreur TD lors de son dernier rejeu. Une nouvelle transition recoit la plus grande priorite vue
+ * jusqu'ici, pour etre rejouee au moins une fois. Les priorites sont rangees dans un {@link SumTree}.
+ * <p>
+ * Comme les transitions ne sont plus tirees uniformement, la correction de chacune est ponderee par
+ * (N * P(k))^-beta (importance sampling), ou N est le nombre de transitions et P(k) la probabilite de tirer k: avec
+ * beta = 1 la mise a jour est, en moyenne, celle du tirage uniforme.
+ */
+public class PrioritizedReplayBuffer extends ReplayBuffer {
+	
+	private final SumTree priorites;
+	
+	/**
+	 * 0: uniform draws, 1: draws proportional to the TD error.
+	 */
+	private double alpha;
+	/**
+	 * Exponent of the importance sampling weights: 0 for no correction, 1 for a full correction.
+	 */
+	private double beta;
+	/**
+	 * Added to |delta| so that no transition has a null probability.
+	 */
+	private double epsilon = 1e-3;
+	
+	/**
+	 * The highest |delta| + epsilon seen, given to the new transitions.
+	 */
+	private double maxErreur = 1.;
+	
+	/**
+	 * @param capacite The maximum number of transitions.
+	 * @param maxNonZero The maximum number of non-zero components of a feature vector.
+	 * @param maxActions The maximum number of legal actions in a state.
+	 * @param alpha The priority exponent.
+	 * @param beta The importance sampling exponent.
+	 */
+	public PrioritizedReplayBuffer(int capacite, int maxNonZero, int maxActions, double alpha, double beta) {
+		super(capacite, maxNonZero, maxActions);
+		this.priorites = new SumTree(capacite);
+		setAlpha(alpha);
+		setBeta(beta);
+	}
+	
+	/* METHODS */
+	
+	@Override
+	public int ajoute(@NotNull FeatureVector phi, int action, double recompense, @NotNull FeatureVector[] phisSuivants, int nbSuivants, boolean absorbant, double actualisation) {
+		int k = super.ajoute(phi, action, recompense, phisSuivants, nbSuivants, absorbant, actualisation);
+		priorites.set(k, Math.pow(maxErreur, alpha));
+		return k;
+	}
+	
+	/**
+	 * @return Return the index of a transition drawn with a probability proportional to its priority.
+	 */
+	@Override
+	public int tire(@NotNull Random rand) {
+		if (getTaille() == 0)
+			throw new IllegalStateException("The replay buffer is empty");
+		
+		return priorites.find(rand.nextDouble() * priorites.getTotal());
+	}
+	
+	/**
+	 * @return Return the importance sampling weight (N * P(k))^-beta of the transition `k`. It is not normalized: the
+	 * caller usually divides the weights of a minibatch by their maximum.
+	 */
+	@Override
+	public double getPoids(int k) {
+		double probabilite = priorites.get(k) / priorites.getTotal();
+		return Math.pow(getTaille() * probabilite, -beta);
+	}
+	
+	/**
+	 * Set the priority of the transition `k` from its last TD error.
+	 */
+	@Override
+	public void majErreur(int k, double erreur) {
+		double e = Math.abs(erreur) + epsilon;
+		if (maxErreur < e)
+			maxErreur = e;
+		
+		priorites.set(k, Math.pow(e, alpha));
+	}
+	
+	@Override
+	public void clear() {
+		super.clear();
+		priorites.clear();
+		maxErreur = 1.;
+	}
+	
+	/* GETTERS & SETTERS */
+	
+	public double getAlpha() {
+		return alpha;
+	}
+	
+	/**
+	 * Only the priorities set after this call use the new exponent.
+	 */
+	public void setAlpha(double alpha) {
+		if (alpha < 0.)
+			throw new IllegalArgumentException("alpha must be positive (given: " + alpha + ")");
+		
+		this.alpha = alpha;
+	}
+	
+	public double getBeta() {
+		return beta;
+	}
+	
+	/**
+	 * @param beta The importance sampling exponent, usually increased towards 1 during the training.
+	 */
+	public void setBeta(double beta) {
+		if (beta < 0. || beta > 1.)
+			throw new IllegalArgumentException("beta must be in [0 ; 1] (given: " + beta + ")");
+		
+		this.beta = beta;
+	}
+	
+	public double getEpsilon() {
+		return epsilon;
+	}
+	
+	public void setEpsilon(double epsilon) {
+		if (!(epsilon > 0.))
+			throw new IllegalArgumentException("epsilon must be strictly positive (given: " + epsilon + ")");
+		
+		this.epsilon = epsilon;
+	}
+}
@@ -1,5 +1,6 @@
 package agent.rlapproxagent;
 
+import agent.rlagent.EnvironnementBatch;
 import agent.rlagent.QLearningAgent;
 import agent.rlagent.RLAgent;
 import environnement.Action;
@@ -30,8 +31,40 @@ public class QLApproxAgent extends QLearningAgent {
 	// Hiding qvaleurs
 	protected Object qvaleurs = null;
 	
+	/**
+	 * Cache of the feature vectors of the states used by the single environment (see {@link CachePhi}).
+	 */
+	private CachePhi cache = new CachePhi();
+	
+	/**
+	 * Batch mode: one cache per environment of the batch, and buffers reused from one step to the next.
+	 */
+	private CachePhi[] cachesBatch = new CachePhi[0];
+	private Etat[] etatsBatch = new Etat[0];
+	private Action[] actionsBatch = new Action[0];
+	private double[] sommesBatch = new double[0];
+	private double[] gradientBatch = new double[0];
+	
+	/**
+	 * Experience replay (disabled if null): each transition is stored, and ratioReplay minibatches of tailleMinibatch
+	 * transitions drawn from the memory are replayed after each step, on average.
+	 */
+	private ReplayBuffer replay = null;
+	private int tailleMinibatch = 32;
+	private double ratioReplay = 1.;
+	/**
+	 * Fraction of minibatch not replayed yet, when ratioReplay is not an integer.
+	 */
+	private double creditReplay = 0.;
+	private FeatureVector[] phisSuivantsReplay = new FeatureVector[0];
+	private double[] gradientReplay = new double[0];
+	private int[] transitionsReplay = new int[0];
+	private double[] erreursReplay = new double[0];
+	private double[] poidsReplay = new double[0];
+	
 	public QLApproxAgent(double alpha, double gamma, @NotNull Environnement env, @NotNull FeatureFunction featureFunction) {
-		super(alpha, gamma, env);
+		// Q is computed from the weights: no table
+		super(alpha, gamma, env, null);
 		
 		// VOTRE CODE
 		setFeatureFunction(featureFunction);
@@ -46,7 +79,123 @@ public class QLApproxAgent extends QLearningAgent {
 	@Override
 	public double getQValeur(Etat e, Action a) {
 		// VOTRE CODE
-		return dotProduct(getFeatureFunction().getFeatures(e, a), getWeights());
+		return getPhi(e, a).dot(getWeights());
+	}
+	
+	/**
+	 * Get the feature vector phi(e,a) from the cache, or compute it.
+	 * @param e The state.
+	 * @param a The action.
+	 * @return Return phi(e,a), in sparse form. The vector belongs to the cache: it is only valid until two
+	 * other states are asked.
+	 */
+	@NotNull
+	protected FeatureVector getPhi(Etat e, Action a) {
+		return cache.get(e, a);
+	}
+	
+	/**
+	 * Empty the caches of feature vectors.
+	 */
+	protected void clearCache() {
+		cache = new CachePhi();
+		cachesBatch = new CachePhi[0];
+	}
+	
+	/**
+	 * Cache of the feature vectors phi(e,a) of the last two states used (typically the current state and the next one),
+	 * indexed by the ordinal of the action. The states are compared by reference: the vectors computed during the choice
+	 * of the action are reused by the update of the weights, and the vectors of the next state by the next choice.
+	 */
+	private class CachePhi {
+		private final Etat[] etats = new Etat[2];
+		private FeatureVector[][] phis = new FeatureVector[2][0];
+		private boolean[][] valides = new boolean[2][0];
+		/**
+		 * The slot used last. The other one is replaced when a new state is asked.
+		 */
+		private int dernier = 0;
+		
+		@NotNull
+		private FeatureVector get(Etat e, Action a) {
+			int slot;
+			if (etats[dernier] == e && e != null)
+				slot = dernier;
+			else if (etats[1 - dernier] == e && e != null)
+				slot = 1 - dernier;
+			else {
+				slot = 1 - dernier;
+				etats[slot] = e;
+				Arrays.fill(valides[slot], false);
+			}
+			dernier = slot;
+			
+			int k = a.ordinal();
+			if (k >= phis[slot].length) {
+				for (int i = 0; i < 2; i++) {
+					phis[i] = Arrays.copyOf(phis[i], k + 1);
+					valides[i] = Arrays.copyOf(valides[i], k + 1);
+				}
+			}
+			
+			FeatureVector phi = phis[slot][k];
+			if (!valides[slot][k]) {
+				if (phi == null)
+					phi = phis[slot][k] = new FeatureVector(featureFunction.getMaxNonZero());
+				
+				phi.fill(featureFunction, e, a);
+				valides[slot][k] = true;
+			}
+			
+			return phi;
+		}
+	}
+	
+	/**
+	 * There is no Q-table: the value is computed from the approximated Q-values.
+	 */
+	@Override
+	public double getValeur(Etat e) {
+		List<Action> actions = env.getActionsPossibles(e);
+		if (actions.isEmpty())
+			return 0.;
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (Action a : actions) {
+			double current = getQValeur(e, a);
+			if (max < current)
+				max = current;
+		}
+		
+		return max;
+	}
+	
+	/**
+	 * There is no Q-table: the policy is computed from the approximated Q-values.
+	 */
+	@Override
+	public List<Action> getPolitique(Etat e) {
+		List<Action> actions = new ArrayList<>();
+		List<Action> legales = getActionsLegales(e);
+		
+		if (legales.size() == 0) {
+			System.out.println("aucune action legale");
+			return actions;
+		}
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (Action a : legales) {
+			double current = getQValeur(e, a);
+			if (max < current) {
+				actions.clear();
+				max = current;
+				actions.add(a);
+			}
+			else if (max == current)
+				actions.add(a);
+		}
+		
+		return actions;
 	}
 	
 	@Override
@@ -59,21 +208,27 @@ public class QLApproxAgent extends QLearningAgent {
 	}
 	
 	@Override
-	public void endStep(Etat e, Action a, Etat esuivant, double reward) {
+	public void endStep(Etat e, Action a, Etat esuivant, double reward, double actualisation) {
 		if (RLAgent.DISPRL)
 			System.out.println("QL: mise a jour poids pour etat \n"+e+" action "+a+" etat' \n"+esuivant+ " r "+reward);
 		//inutile de verifier si e etat absorbant car dans runEpisode et threadepisode 
 		//arrete episode lq etat courant absorbant	
 		
 		// VOTRE CODE
-		double[] phi = featureFunction.getFeatures(e, a);
 		double max = getValeur(esuivant);
-		double qvalue = getQValeur(e, a);
+		FeatureVector phiCreux = getPhi(e, a);
+		double correction = getAlpha() * (reward + actualisation * max - phiCreux.dot(weights));
 		
-		for (int k = 0; k < weights.length; k++)
-			weights[k] += getAlpha() * (reward + getGamma() * max - qvalue) * phi[k];
+		// Only the weights of the non-zero features change
+		phiCreux.axpy(correction, weights);
+		
+		if (replay != null) {
+			memorise(phiCreux, a, esuivant, reward, actualisation);
+			rejoue();
+		}
 		
 		if (DISPETAT) {
+			double[] phi = phiCreux.toArray(featureFunction.getFeatureNb());
 			if (e instanceof StateGamePacman) {
 				String etat = String.format("%3d", ((StateGamePacman) e).getStep());
 				StringBuilder content = new StringBuilder("\tvfeature(")
@@ -137,6 +292,171 @@ public class QLApproxAgent extends QLearningAgent {
 		}
 	}
 	
+	/**
+	 * Store the transition in the replay memory. The feature vectors of the next state are in the cache, as they have
+	 * just been used to compute its value. The discount factor is stored too, as it is gamma^n for a n-step target.
+	 */
+	private void memorise(FeatureVector phi, Action a, Etat esuivant, double reward, double actualisation) {
+		List<Action> actions = env.getActionsPossibles(esuivant);
+		int nb = actions.size();
+		if (nb > replay.getMaxActions())
+			throw new IllegalStateException("The replay memory stores at most " + replay.getMaxActions() + " next actions, the state has " + nb + " legal actions");
+		if (phisSuivantsReplay.length < nb)
+			phisSuivantsReplay = new FeatureVector[replay.getMaxActions()];
+		
+		for (int i = 0; i < nb; i++)
+			phisSuivantsReplay[i] = getPhi(esuivant, actions.get(i));
+		
+		replay.ajoute(phi, a.ordinal(), reward, phisSuivantsReplay, nb, estAbsorbant(esuivant), actualisation);
+	}
+	
+	/**
+	 * Replay ratioReplay minibatches on average: each one moves the weights by alpha times the mean correction of
+	 * tailleMinibatch transitions drawn from the memory, computed with the same weights. Each correction is weighted by
+	 * {@link ReplayBuffer#getPoids(int)} divided by the highest weight of the minibatch (1 for uniform draws).
+	 */
+	private void rejoue() {
+		if (gradientReplay.length != weights.length)
+			gradientReplay = new double[weights.length];
+		if (transitionsReplay.length != tailleMinibatch) {
+			transitionsReplay = new int[tailleMinibatch];
+			erreursReplay = new double[tailleMinibatch];
+			poidsReplay = new double[tailleMinibatch];
+		}
+		
+		creditReplay += ratioReplay;
+		while (creditReplay >= 1.) {
+			creditReplay -= 1.;
+			
+			int m = Math.min(tailleMinibatch, replay.getTaille());
+			double maxPoids = 0.;
+			for (int j = 0; j < m; j++) {
+				int k = replay.tire(rand);
+				transitionsReplay[j] = k;
+				erreursReplay[j] = replay.getCible(k, weights) - replay.getQValeur(k, weights);
+				poidsReplay[j] = replay.getPoids(k);
+				maxPoids = Math.max(maxPoids, poidsReplay[j]);
+			}
+			
+			Arrays.fill(gradientReplay, 0.);
+			for (int j = 0; j < m; j++) {
+				replay.axpy(transitionsReplay[j], poidsReplay[j] / maxPoids * erreursReplay[j], gradientReplay);
+				replay.majErreur(transitionsReplay[j], erreursReplay[j]);
+			}
+			
+			double pas = getAlpha() / m;
+			for (int i = 0; i < weights.length; i++)
+				weights[i] += pas * gradientReplay[i];
+		}
+	}
+	
+	/**
+	 * Batch mode: choose an action in each environment of the batch (epsilon-greedy), play them, and update the weights
+	 * once for the whole batch (see {@link #endStepBatch(Etat[], Action[], EnvironnementBatch)}).
+	 * <p>
+	 * The sum of the rewards of each finished episode is notified to the observers, as in {@link #endEpisode()}.
+	 * @param batch The environments.
+	 * @param epsilon The probability to choose a random action.
+	 */
+	public void runOneStepBatch(@NotNull EnvironnementBatch batch, double epsilon) {
+		int n = batch.getNbEnvironnements();
+		initBatch(n);
+		
+		for (int i = 0; i < n; i++) {
+			etatsBatch[i] = batch.getEtat(i);
+			actionsBatch[i] = getActionBatch(i, etatsBatch[i], batch.getActionsPossibles(i), epsilon);
+		}
+		
+		batch.doActions(actionsBatch);
+		endStepBatch(etatsBatch, actionsBatch, batch);
+		
+		for (int i = 0; i < n; i++) {
+			sommesBatch[i] += batch.getRecompense(i);
+			if (batch.estFini(i)) {
+				this.episodeNb++;
+				this.notifyObs(sommesBatch[i]);
+				sommesBatch[i] = 0.;
+			}
+		}
+	}
+	
+	/**
+	 * Update the weights with the transitions of the last step of a batch: the corrections of all the transitions are
+	 * computed with the same weights, then the weights move by alpha times their mean. The value of an absorbing state
+	 * is 0.
+	 * @param e The state of each environment before the step.
+	 * @param a The action played in each environment.
+	 * @param batch The environments, after {@link EnvironnementBatch#doActions(Action[])}.
+	 */
+	public void endStepBatch(@NotNull Etat[] e, @NotNull Action[] a, @NotNull EnvironnementBatch batch) {
+		int n = batch.getNbEnvironnements();
+		initBatch(n);
+		Arrays.fill(gradientBatch, 0.);
+		
+		for (int i = 0; i < n; i++) {
+			double cible = batch.getRecompense(i);
+			if (!batch.estAbsorbant(i))
+				cible += getGamma() * getValeurBatch(i, batch.getEtatSuivant(i), batch.getActionsSuivantes(i));
+			
+			FeatureVector phi = cachesBatch[i].get(e[i], a[i]);
+			phi.axpy(cible - phi.dot(weights), gradientBatch);
+		}
+		
+		double pas = getAlpha() / n;
+		for (int k = 0; k < weights.length; k++)
+			weights[k] += pas * gradientBatch[k];
+	}
+	
+	/**
+	 * @return Return a random legal action with probability epsilon, the first action of highest Q-value otherwise.
+	 */
+	private Action getActionBatch(int i, Etat e, List<Action> legales, double epsilon) {
+		if (legales.isEmpty())
+			throw new IllegalStateException("No legal action in the environment " + i + " of the batch");
+		
+		if (rand.nextDouble() < epsilon)
+			return legales.get(rand.nextInt(legales.size()));
+		
+		Action best = null;
+		double max = Double.NEGATIVE_INFINITY;
+		for (Action action : legales) {
+			double q = cachesBatch[i].get(e, action).dot(weights);
+			if (max < q) {
+				max = q;
+				best = action;
+			}
+		}
+		
+		return best;
+	}
+	
+	private double getValeurBatch(int i, Etat e, List<Action> legales) {
+		if (legales.isEmpty())
+			return 0.;
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (Action action : legales)
+			max = Math.max(max, cachesBatch[i].get(e, action).dot(weights));
+		
+		return max;
+	}
+	
+	/**
+	 * Allocate the buffers of the batch mode if the number of environments has changed.
+	 */
+	private void initBatch(int n) {
+		if (cachesBatch.length != n) {
+			cachesBatch = new CachePhi[n];
+			for (int i = 0; i < n; i++)
+				cachesBatch[i] = new CachePhi();
+			etatsBatch = new Etat[n];
+			actionsBatch = new Action[n];
+			sommesBatch = new double[n];
+		}
+		if (gradientBatch.length != weights.length)
+			gradientBatch = new double[weights.length];
+	}
+	
 	@Override
 	public void reset() {
 		super.reset();
@@ -145,6 +465,10 @@ public class QLApproxAgent extends QLearningAgent {
 		
 		// Set all weights to zero
 		Arrays.fill(weights, 0.);
+		clearCache();
+		if (replay != null)
+			replay.clear();
+		creditReplay = 0.;
 		
 		this.episodeNb =0;
 		this.notifyObs();
@@ -177,6 +501,77 @@ public class QLApproxAgent extends QLearningAgent {
 	
 	public void setFeatureFunction(@NotNull FeatureFunction featureFunction) {
 		this.featureFunction = featureFunction;
+		clearCache();
+	}
+	
+	/**
+	 * Enable experience replay, or disable it if `capacite` is 0. Replay comes in addition to the update with the
+	 * transition just observed. A state has at most as many legal actions as the enum of the actions of the environment.
+	 * @param capacite The number of transitions kept in memory.
+	 * @param tailleMinibatch The number of transitions of a minibatch.
+	 * @param ratioReplay The mean number of minibatches replayed after each step (e.g. 0.25 for one minibatch every 4
+	 *                    steps).
+	 * @throws IllegalStateException if the actions of the current state of the environment are not the values of an
+	 * enum: give the maximum number of actions with {@link #setReplay(int, int, double, int)}.
+	 */
+	public void setReplay(int capacite, int tailleMinibatch, double ratioReplay) {
+		setReplay(capacite, tailleMinibatch, ratioReplay, capacite == 0 ? 1 : getNbActionsEnv());
+	}
+	
+	/**
+	 * Enable experience replay, or disable it if `capacite` is 0.
+	 * @param capacite The number of transitions kept in memory.
+	 * @param tailleMinibatch The number of transitions of a minibatch.
+	 * @param ratioReplay The mean number of minibatches replayed after each step.
+	 * @param maxActions The maximum number of legal actions in a state of the environment.
+	 */
+	public void setReplay(int capacite, int tailleMinibatch, double ratioReplay, int maxActions) {
+		if (capacite < 0 || tailleMinibatch < 1 || ratioReplay < 0. || maxActions < 1)
+			throw new IllegalArgumentException("Invalid replay parameters: capacity " + capacite + ", minibatch size " + tailleMinibatch + ", replay ratio " + ratioReplay + ", number of actions " + maxActions);
+		
+		this.replay = capacite == 0 ? null : new ReplayBuffer(capacite, featureFunction.getMaxNonZero(), maxActions);
+		this.tailleMinibatch = tailleMinibatch;
+		this.ratioReplay = ratioReplay;
+		this.creditReplay = 0.;
+	}
+	
+	/**
+	 * Enable prioritized experience replay (see {@link PrioritizedReplayBuffer}). The maximum number of actions is taken
+	 * from the environment as in {@link #setReplay(int, int, double)}.
+	 * @param capacite The number of transitions kept in memory.
+	 * @param tailleMinibatch The number of transitions of a minibatch.
+	 * @param ratioReplay The mean number of minibatches replayed after each step.
+	 * @param alphaPriorite The priority exponent (0: uniform draws).
+	 * @param beta The importance sampling exponent (1: full correction).
+	 */
+	public void setReplayPrioritaire(int capacite, int tailleMinibatch, double ratioReplay, double alphaPriorite, double beta) {
+		setReplay(capacite, tailleMinibatch, ratioReplay);
+		if (capacite > 0)
+			this.replay = new PrioritizedReplayBuffer(capacite, featureFunction.getMaxNonZero(), replay.getMaxActions(), alphaPriorite, beta);
+	}
+	
+	/**
+	 * @return Return the number of values of the enum of the actions of the current state of the environment.
+	 * @throws IllegalStateException if the current state has no legal action, or if its actions are not enum values.
+	 */
+	private int getNbActionsEnv() {
+		List<Action> actions = env.getActionsPossibles(env.getEtatCourant());
+		if (actions.isEmpty() || !(actions.get(0) instanceof Enum))
+			throw new IllegalStateException("The number of actions cannot be taken from the actions " + actions + " of the current state: give it to setReplay");
+		
+		return ((Enum<?>) actions.get(0)).getDeclaringClass().getEnumConstants().length;
+	}
+	
+	public ReplayBuffer getReplay() {
+		return replay;
+	}
+	
+	public int getTailleMinibatch() {
+		return tailleMinibatch;
+	}
+	
+	public double getRatioReplay() {
+		return ratioReplay;
 	}
 	
 	public double[] getWeights() {
@@ -0,0 +1,197 @@
+package agent.rlapproxagent;
+
+import agent.rlagent.QLambdaAgent;
+import agent.rlagent.RLAgent;
+import environnement.Action;
+import environnement.Environnement;
+import environnement.Etat;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Q(lambda) de Watkins avec approximation lineaire (voir {@link QLambdaAgent} pour la version tabulaire): la trace
+ * d'eligibilite est un vecteur z de la dimension des poids, z = gamma * lambda * z + phi(e,a) a chaque pas, et les
+ * poids recoivent alpha * delta * z.
+ * <p>
+ * Le vecteur z est creux: seules les composantes dont la valeur absolue depasse {@link #seuilTrace} sont gardees, ce
+ * qui borne le cout d'un pas par le nombre de fonctions caracteristiques non nulles des derniers pas. Les traces sont
+ * effacees au debut de chaque episode et lorsque l'action choisie n'est pas gloutonne. La memoire de rejeu
+ * ({@link #setReplay(int, int, double)}) n'est pas utilisee par cet agent.
+ */
+public class QLambdaApproxAgent extends QLApproxAgent {
+	
+	private double lambda;
+	/**
+	 * The components of the trace under this threshold (in absolute value) are dropped.
+	 */
+	private double seuilTrace = 1e-3;
+	
+	/**
+	 * The non-zero components of the trace, in no particular order: z[indicesTrace[j]] = traces[j].
+	 */
+	private int[] indicesTrace = new int[16];
+	private double[] traces = new double[16];
+	private int nbTraces = 0;
+	/**
+	 * positions[i] is the position j of the feature i in the trace, -1 if it is not traced.
+	 */
+	private int[] positions = new int[0];
+	
+	/**
+	 * @param lambda The trace decay, in [0 ; 1] (0: one-step Q-learning).
+	 */
+	public QLambdaApproxAgent(double alpha, double gamma, double lambda, @NotNull Environnement env, @NotNull FeatureFunction featureFunction) {
+		super(alpha, gamma, env, featureFunction);
+		setLambda(lambda);
+	}
+	
+	/* METHODS */
+	
+	@Override
+	public void endStep(Etat e, Action a, Etat esuivant, double reward, double actualisation) {
+		if (RLAgent.DISPRL)
+			System.out.println("Q(lambda): mise a jour poids pour etat \n" + e + " action " + a + " etat' \n" + esuivant + " r " + reward);
+		
+		double[] weights = getWeights();
+		if (positions.length != weights.length) {
+			// First step, or new feature function
+			positions = new int[weights.length];
+			Arrays.fill(positions, -1);
+			nbTraces = 0;
+		}
+		
+		double max = getValeur(esuivant);
+		FeatureVector phi = getPhi(e, a);
+		double delta = reward + actualisation * max - phi.dot(weights);
+		ajoute(phi);
+		
+		double decroissance = getGamma() * lambda;
+		double correction = getAlpha() * delta;
+		int j = 0;
+		while (j < nbTraces) {
+			weights[indicesTrace[j]] += correction * traces[j];
+			
+			traces[j] *= decroissance;
+			if (Math.abs(traces[j]) < seuilTrace)
+				retire(j);
+			else
+				j++;
+		}
+	}
+	
+	/**
+	 * z += phi.
+	 */
+	private void ajoute(FeatureVector phi) {
+		for (int k = 0; k < phi.getNnz(); k++) {
+			int i = phi.getIndice(k);
+			int j = positions[i];
+			if (j >= 0)
+				traces[j] += phi.getValeur(k);
+			else {
+				if (nbTraces == traces.length) {
+					indicesTrace = Arrays.copyOf(indicesTrace, 2 * nbTraces);
+					traces = Arrays.copyOf(traces, 2 * nbTraces);
+				}
+				indicesTrace[nbTraces] = i;
+				traces[nbTraces] = phi.getValeur(k);
+				positions[i] = nbTraces;
+				nbTraces++;
+			}
+		}
+	}
+	
+	/**
+	 * Remove the component at the position j, replaced by the last one.
+	 */
+	private void retire(int j) {
+		positions[indicesTrace[j]] = -1;
+		nbTraces--;
+		if (j < nbTraces) {
+			indicesTrace[j] = indicesTrace[nbTraces];
+			traces[j] = traces[nbTraces];
+			positions[indicesTrace[j]] = j;
+		}
+	}
+	
+	/**
+	 * Remove all the traces.
+	 */
+	protected void effaceTraces() {
+		for (int j = 0; j < nbTraces; j++)
+			positions[indicesTrace[j]] = -1;
+		nbTraces = 0;
+	}
+	
+	/**
+	 * The traces are cut if the chosen action is not greedy.
+	 */
+	@Override
+	public Action getAction(Etat e) {
+		Action a = super.getAction(e);
+		if (a != null && nbTraces > 0 && getQValeur(e, a) < getValeur(e))
+			effaceTraces();
+		
+		return a;
+	}
+	
+	@Override
+	public void startEpisode() {
+		super.startEpisode();
+		effaceTraces();
+	}
+	
+	@Override
+	public void reset() {
+		effaceTraces();
+		super.reset();
+	}
+	
+	/* GETTERS & SETTERS */
+	
+	/**
+	 * The traces already mix the returns of all lengths, and decay with gamma * lambda at each step: only one-step
+	 * updates are supported.
+	 * @throws IllegalArgumentException if nbPasCible is not 1.
+	 */
+	@Override
+	public void setNbPasCible(int nbPasCible) {
+		if (nbPasCible != 1)
+			throw new IllegalArgumentException("Q(lambda) only does one-step updates (given: " + nbPasCible + " steps)");
+		
+		super.setNbPasCible(nbPasCible);
+	}
+	
+	public double getLambda() {
+		return lambda;
+	}
+	
+	public void setLambda(double lambda) {
+		if (lambda < 0. || lambda > 1.)
+			throw new IllegalArgumentException("lambda must be in [0 ; 1] (given: " + lambda + ")");
+		
+		this.lambda = lambda;
+	}
+	
+	public double getSeuilTrace() {
+		return seuilTrace;
+	}
+	
+	/**
+	 * @param seuilTrace The threshold under which a component of the trace is dropped (strictly positive).
+	 */
+	public void setSeuilTrace(double seuilTrace) {
+		if (!(seuilTrace > 0.))
+			throw new IllegalArgumentException("The trace threshold must be strictly positive (given: " + seuilTrace + ")");
+		
+		this.seuilTrace = seuilTrace;
+	}
+	
+	/**
+	 * @return Return the number of non-zero components of the trace.
+	 */
+	public int getNbTraces() {
+		return nbTraces;
+	}
+}
@@ -0,0 +1,237 @@
+package agent.rlapproxagent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Random;
+
+/**
+ * Memoire de rejeu (experience replay) pour {@link QLApproxAgent}: les dernieres transitions observees sont gardees
+ * pour etre reutilisees par des mises a jour ulterieures des poids.
+ * <p>
+ * Une transition est stockee sous forme de vecteurs creux, car ce sont eux qu'utilise la mise a jour: phi(s,a), et
+ * phi(s',a') pour chaque action legale a' de l'etat suivant (pour calculer max_a' Q(s',a') avec les poids courants).
+ * Le facteur d'actualisation de la valeur de s' est garde avec la transition (gamma^n pour une cible a n pas, voir
+ * {@link agent.rlagent.RLAgent#setNbPasCible(int)}). Les etats eux-memes ne sont pas gardes. Tout est range dans des tableaux primitifs alloues a la construction, utilises
+ * comme un tampon circulaire: lorsque la memoire est pleine, la transition la plus ancienne est remplacee.
+ */
+public class ReplayBuffer {
+	
+	private final int capacite;
+	private final int maxNonZero;
+	private final int maxActions;
+	/**
+	 * Number of vectors per transition: phi(s,a), then phi(s',a') for at most maxActions actions.
+	 */
+	private final int vecteursParTransition;
+	
+	/**
+	 * Vector v of transition k: non-zero components in [(k * vecteursParTransition + v) * maxNonZero ; + nnz[...][.
+	 */
+	private final int[] indices;
+	private final double[] valeurs;
+	private final int[] nnz;
+	
+	private final int[] actions;
+	private final double[] recompenses;
+	private final double[] actualisations;
+	private final int[] nbActionsSuivantes;
+	private final boolean[] absorbants;
+	
+	/**
+	 * The next transition is written at `suivante`.
+	 */
+	private int suivante = 0;
+	private int taille = 0;
+	
+	/**
+	 * @param capacite The maximum number of transitions.
+	 * @param maxNonZero The maximum number of non-zero components of a feature vector
+	 *                   ({@link FeatureFunction#getMaxNonZero()}).
+	 * @param maxActions The maximum number of legal actions in a state.
+	 */
+	public ReplayBuffer(int capacite, int maxNonZero, int maxActions) {
+		if (capacite < 1 || maxNonZero < 1 || maxActions < 1)
+			throw new IllegalArgumentException("The capacity, number of non-zero components and number of actions must be strictly positive (given: " + capacite + ", " + maxNonZero + ", " + maxActions + ")");
+		
+		this.capacite = capacite;
+		this.maxNonZero = maxNonZero;
+		this.maxActions = maxActions;
+		this.vecteursParTransition = 1 + maxActions;
+		
+		this.indices = new int[capacite * vecteursParTransition * maxNonZero];
+		this.valeurs = new double[capacite * vecteursParTransition * maxNonZero];
+		this.nnz = new int[capacite * vecteursParTransition];
+		this.actions = new int[capacite];
+		this.recompenses = new double[capacite];
+		this.actualisations = new double[capacite];
+		this.nbActionsSuivantes = new int[capacite];
+		this.absorbants = new boolean[capacite];
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Store a transition, in place of the oldest one if the buffer is full.
+	 * @param phi phi(s,a).
+	 * @param action The ordinal of a.
+	 * @param recompense The reward.
+	 * @param phisSuivants phi(s',a') for each legal action a' of s' (only the first `nbSuivants` are read).
+	 * @param nbSuivants The number of legal actions of s' (at most maxActions).
+	 * @param absorbant True if s' is absorbing: its value is then 0.
+	 * @param actualisation The discount factor of the value of s' (gamma, or gamma^n if the reward is a n-step return).
+	 * @return Return the index of the transition.
+	 */
+	public int ajoute(@NotNull FeatureVector phi, int action, double recompense, @NotNull FeatureVector[] phisSuivants, int nbSuivants, boolean absorbant, double actualisation) {
+		if (nbSuivants > maxActions)
+			throw new IllegalArgumentException("Too many next actions: " + nbSuivants + " (maximum: " + maxActions + ")");
+		
+		int k = suivante;
+		copie(phi, k * vecteursParTransition);
+		for (int v = 0; v < nbSuivants; v++)
+			copie(phisSuivants[v], k * vecteursParTransition + 1 + v);
+		
+		actions[k] = action;
+		recompenses[k] = recompense;
+		actualisations[k] = actualisation;
+		nbActionsSuivantes[k] = nbSuivants;
+		absorbants[k] = absorbant;
+		
+		suivante = (suivante + 1) % capacite;
+		if (taille < capacite)
+			taille++;
+		
+		return k;
+	}
+	
+	private void copie(FeatureVector phi, int vecteur) {
+		if (phi.getNnz() > maxNonZero)
+			throw new IllegalArgumentException("Too many non-zero components: " + phi.getNnz() + " (maximum: " + maxNonZero + ")");
+		
+		int debut = vecteur * maxNonZero;
+		for (int i = 0; i < phi.getNnz(); i++) {
+			indices[debut + i] = phi.getIndice(i);
+			valeurs[debut + i] = phi.getValeur(i);
+		}
+		nnz[vecteur] = phi.getNnz();
+	}
+	
+	private double dot(int vecteur, double[] weights) {
+		int debut = vecteur * maxNonZero;
+		double result = 0.;
+		for (int i = debut, fin = debut + nnz[vecteur]; i < fin; i++)
+			result += valeurs[i] * weights[indices[i]];
+		
+		return result;
+	}
+	
+	/**
+	 * @param rand The random number generator.
+	 * @return Return the index of a transition drawn uniformly.
+	 */
+	public int tire(@NotNull Random rand) {
+		if (taille == 0)
+			throw new IllegalStateException("The replay buffer is empty");
+		
+		return rand.nextInt(taille);
+	}
+	
+	/**
+	 * @param k The index of a transition drawn by {@link #tire(Random)}.
+	 * @return Return the weight of the correction of the transition in a minibatch: 1, as the draws are uniform.
+	 */
+	public double getPoids(int k) {
+		return 1.;
+	}
+	
+	/**
+	 * Called with the TD error of a transition after it has been replayed. Nothing to do, as the draws are uniform.
+	 * @param k The index of the transition.
+	 * @param erreur The TD error, target - Q(s,a).
+	 */
+	public void majErreur(int k, double erreur) {
+	}
+	
+	/**
+	 * @param k The index of a transition.
+	 * @param weights The weights.
+	 * @return Return Q(s,a) = phi(s,a).weights.
+	 */
+	public double getQValeur(int k, @NotNull double[] weights) {
+		return dot(k * vecteursParTransition, weights);
+	}
+	
+	/**
+	 * @param k The index of a transition.
+	 * @param weights The weights.
+	 * @return Return the target r + actualisation * max_a' Q(s',a'), with the discount factor stored with the transition,
+	 * where the value of an absorbing state (or of a state with no legal action) is 0.
+	 */
+	public double getCible(int k, @NotNull double[] weights) {
+		if (absorbants[k] || nbActionsSuivantes[k] == 0)
+			return recompenses[k];
+		
+		double max = Double.NEGATIVE_INFINITY;
+		for (int v = 1; v <= nbActionsSuivantes[k]; v++)
+			max = Math.max(max, dot(k * vecteursParTransition + v, weights));
+		
+		return recompenses[k] + actualisations[k] * max;
+	}
+	
+	/**
+	 * Add `alpha` times phi(s,a) to `weights`.
+	 * @param k The index of a transition.
+	 * @param alpha The factor.
+	 * @param weights The weights.
+	 */
+	public void axpy(int k, double alpha, @NotNull double[] weights) {
+		int vecteur = k * vecteursParTransition;
+		int debut = vecteur * maxNonZero;
+		for (int i = debut, fin = debut + nnz[vecteur]; i < fin; i++)
+			weights[indices[i]] += alpha * valeurs[i];
+	}
+	
+	/**
+	 * Remove all the transitions.
+	 */
+	public void clear() {
+		suivante = 0;
+		taille = 0;
+	}
+	
+	/* GETTERS */
+	
+	public int getCapacite() {
+		return capacite;
+	}
+	
+	/**
+	 * @return Return the number of transitions stored.
+	 */
+	public int getTaille() {
+		return taille;
+	}
+	
+	public int getMaxNonZero() {
+		return maxNonZero;
+	}
+	
+	public int getMaxActions() {
+		return maxActions;
+	}
+	
+	public int getAction(int k) {
+		return actions[k];
+	}
+	
+	public double getRecompense(int k) {
+		return recompenses[k];
+	}
+	
+	public double getActualisation(int k) {
+		return actualisations[k];
+	}
+	
+	public boolean estAbsorbant(int k) {
+		return absorbants[k];
+	}
+}
@@ -0,0 +1,100 @@
+package agent.rlapproxagent;
+
+import java.util.Arrays;
+
+/**
+ * Arbre binaire de sommes range dans un tableau: chaque feuille porte une priorite positive, chaque noeud la somme des
+ * priorites de ses fils. Modifier une priorite et tirer une feuille avec une probabilite proportionnelle a sa priorite
+ * coutent O(log n).
+ * <p>
+ * Le noeud i a pour fils 2i et 2i+1, la racine est le noeud 1, et la feuille k est le noeud nbFeuilles + k (nbFeuilles
+ * est arrondi a une puissance de 2, les feuilles en trop ont une priorite nulle).
+ */
+public class SumTree {
+	
+	private final int capacite;
+	private final int nbFeuilles;
+	private final double[] sommes;
+	
+	/**
+	 * @param capacite The number of leaves.
+	 */
+	public SumTree(int capacite) {
+		if (capacite < 1 || capacite > 1 << 29)
+			throw new IllegalArgumentException("The capacity must be between 1 and 2^29 (given: " + capacite + ")");
+		
+		int n = Integer.highestOneBit(capacite);
+		if (n < capacite)
+			n <<= 1;
+		
+		this.capacite = capacite;
+		this.nbFeuilles = n;
+		this.sommes = new double[2 * n];
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * Set the priority of the leaf `k`, and update the sums of its ancestors.
+	 * @param k The index of the leaf.
+	 * @param priorite The new priority (positive or 0).
+	 */
+	public void set(int k, double priorite) {
+		if (k < 0 || k >= capacite)
+			throw new IndexOutOfBoundsException("Leaf " + k + " (capacity: " + capacite + ")");
+		if (!(priorite >= 0.))
+			throw new IllegalArgumentException("A priority must be positive (given: " + priorite + ")");
+		
+		int i = nbFeuilles + k;
+		sommes[i] = priorite;
+		for (i >>= 1; i >= 1; i >>= 1)
+			sommes[i] = sommes[2 * i] + sommes[2 * i + 1];
+	}
+	
+	/**
+	 * @param k The index of the leaf.
+	 * @return Return the priority of the leaf `k`.
+	 */
+	public double get(int k) {
+		return sommes[nbFeuilles + k];
+	}
+	
+	/**
+	 * @return Return the sum of all the priorities.
+	 */
+	public double getTotal() {
+		return sommes[1];
+	}
+	
+	/**
+	 * Find the leaf whose interval contains `u`, the leaves being laid end to end in their order, each with a length
+	 * equal to its priority. With `u` uniform in [0 ; total[, the leaf `k` is found with probability priority(k) / total.
+	 * @param u A value in [0 ; total[.
+	 * @return Return the index of the leaf.
+	 */
+	public int find(double u) {
+		int i = 1;
+		while (i < nbFeuilles) {
+			int gauche = 2 * i;
+			if (u < sommes[gauche] || sommes[gauche + 1] == 0.)
+				i = gauche;
+			else {
+				u -= sommes[gauche];
+				i = gauche + 1;
+			}
+		}
+		
+		return i - nbFeuilles;
+	}
+	
+	/**
+	 * Set all the priorities to 0.
+	 */
+	public void clear() {
+		Arrays.fill(sommes, 0.);
+	}
+	
+	public int getCapacite() {
+		return capacite;
+	}
+}
@@ -1,5 +1,6 @@
 package agent.strategy;
 
+import agent.RandomProvider;
 import agent.rlagent.RLAgent;
 import environnement.Action;
 import environnement.Etat;
@@ -8,7 +9,6 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
-import java.util.Random;
 
 /**
  * Strategie qui renvoit un choix aleatoire avec proba epsilon, un choix glouton (suit la politique de l'agent) sinon
@@ -21,13 +21,11 @@ public class StrategyGreedy extends StrategyExploration {
 	 * parametre pour probabilite d'exploration
 	 */
 	protected double epsilon;
-	private Random rand = new Random();
 	
 	public StrategyGreedy(RLAgent agent, double epsilon) {
 		super(agent);
 		this.epsilon = epsilon;
 	}
-	@SuppressWarnings("CopyConstructorMissesField") // Do not include `rand` as copyable variable.
 	public StrategyGreedy(@NotNull StrategyGreedy strategyGreedy) {
 		this((RLAgent) strategyGreedy.getAgent(), strategyGreedy.getEpsilon());
 	}
@@ -51,9 +49,9 @@ public class StrategyGreedy extends StrategyExploration {
 		
 		// VOTRE CODE
 		
-		// If the random number generator choose a value between [0 ; ε]
-		if (rand.nextDouble() <= getEpsilon() || actions.isEmpty())
-			return actionsLegales.get(rand.nextInt(actionsLegales.size()));
+		// If the random number generator choose a value between [0 ; ε] (stream of the current thread, see RandomProvider)
+		if (RandomProvider.nextDouble() <= getEpsilon() || actions.isEmpty())
+			return actionsLegales.get(RandomProvider.nextInt(actionsLegales.size()));
 		// Else, choose the best action
 		else
 			return actions.get(0);
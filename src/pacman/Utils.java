@@ -1,5 +1,6 @@
 package pacman;
 
+import agent.RandomProvider;
 import javafx.util.Pair;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -9,8 +10,6 @@ import pacman.elements.StateAgentPacman;
 import pacman.elements.StateGamePacman;
 import pacman.environnementRL.Distance;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
 
 public class Utils {
@@ -160,33 +159,48 @@ public class Utils {
 		};
 	}
 	
+	/**
+	 * @return Return a new map of the food of the maze of `state`.
+	 */
 	public static boolean[][] getFoods(@NotNull final StateGamePacman state) {
-		try {
-			return getBooleanArray(state, "isFood");
-		} catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-			throw new RuntimeException(e);
-		}
+		MazePacman maze = state.getMaze();
+		boolean[][] f = new boolean[maze.getSizeX()][maze.getSizeY()];
+		for (int cell = maze.nextFood(0); cell >= 0; cell = maze.nextFood(cell + 1))
+			f[maze.indexToX(cell)][maze.indexToY(cell)] = true;
+		
+		return f;
 	}
 	
+	/**
+	 * @return Return a new map of the walls of the maze of `state`.
+	 */
 	public static boolean[][] getWalls(@NotNull final StateGamePacman state) {
-		try {
-			return getBooleanArray(state, "isWall");
-		} catch (NoSuchMethodException | InvocationTargetException | IllegalAccessException e) {
-			throw new RuntimeException(e);
-		}
+		MazePacman maze = state.getMaze();
+		boolean[][] w = new boolean[maze.getSizeX()][maze.getSizeY()];
+		for (int cell = maze.nextWall(0); cell >= 0; cell = maze.nextWall(cell + 1))
+			w[maze.indexToX(cell)][maze.indexToY(cell)] = true;
+		
+		return w;
 	}
 	
-	private static boolean[][] getBooleanArray(@NotNull final StateGamePacman state, @NotNull final String methodName) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
-		Method isThere = state.getMaze().getClass().getMethod(methodName, int.class, int.class);
-		
-		boolean[][] f = new boolean[state.getMaze().getSizeX()][state.getMaze().getSizeY()];
-		for (int x = 0; x < state.getMaze().getSizeX(); x++) {
-			for (int y = 0; y < state.getMaze().getSizeY(); y++) {
-				f[x][y] = (boolean) isThere.invoke(state.getMaze(), x, y);
-			}
-		}
+	/**
+	 * Find the closest food to `reference` (euclidean distance) with {@link MazePacman#getClosestFoodEuclidean(int, int)},
+	 * which only reads the cells closer than the answer. Same result as
+	 * `getClosestAgent(reference, convertBooleanArrayToStates(getFoods(state)))`: among foods at the same distance, the
+	 * one with the lowest x, then the lowest y, is chosen.
+	 * @param reference The reference agent.
+	 * @param maze The maze.
+	 * @return Return the closest food and its distance, or null as key (and Double.MAX_VALUE) if there is no food left.
+	 */
+	@NotNull
+	@Contract("_, _ -> new")
+	public static Pair<StateAgentPacman, Double> getClosestFood(@NotNull StateAgentPacman reference, @NotNull MazePacman maze) {
+		int cell = maze.getClosestFoodEuclidean(reference.getX(), reference.getY());
+		if (cell < 0)
+			return new Pair<>(null, Double.MAX_VALUE);
 		
-		return f;
+		StateAgentPacman food = new StateAgentPacman(maze.indexToX(cell), maze.indexToY(cell));
+		return new Pair<>(food, computeDistance(reference, food, Distance.EUCLIDEAN));
 	}
 	
 	/**
@@ -289,7 +303,7 @@ public class Utils {
 	}
 	
 	public static <T> T pickRandomly(@NotNull List<T> elements) {
-		return elements.get(new Random().nextInt(elements.size()));
+		return elements.get(RandomProvider.nextInt(elements.size()));
 	}
 	public static  <T> T pickRandomly(T... elements) {
 		return pickRandomly(Arrays.asList(elements));
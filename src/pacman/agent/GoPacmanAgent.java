@@ -29,7 +29,7 @@ public class GoPacmanAgent implements AgentPacman{
 
 		 */
 		
-		return new ActionPacman(action.ordinal());
+		return ActionPacman.get(action.ordinal());
 
 	}
 
@@ -1,9 +1,9 @@
 package pacman.agent;
 
-import java.util.ArrayList;
-
+import agent.RandomProvider;
 import pacman.elements.AgentPacman;
 import pacman.elements.ActionPacman;
+import pacman.elements.MazePacman;
 import pacman.elements.StateAgentPacman;
 import pacman.elements.StateGamePacman;
 
@@ -21,13 +21,22 @@ public class RandomPacmanAgent implements AgentPacman
 			public static int EAST=3;
 			public static int WEST=4;
 		 */
-		ArrayList<ActionPacman> aa=new ArrayList<ActionPacman>();
+		//tire une action parmi les actions legales, sans allouer de liste
+		int nb=0;
+		for(int i=0;i<4;i++)
+		{
+			if (state.isLegalMove(ActionPacman.get(i),as))//si essaie d'aller dans mur, reste sur place
+				nb++;
+		}
+		if (nb==0)
+			return(ActionPacman.get(MazePacman.STOP));
+		int k=RandomProvider.nextInt(nb);//flux du thread courant, voir RandomProvider
 		for(int i=0;i<4;i++)
 		{
-			if (state.isLegalMove(new ActionPacman(i),as))//si essaie d'aller dans mur, reste sur place
-				aa.add(new ActionPacman(i));
-		}		
-		return(aa.get((int)(Math.random()*aa.size())));
+			if (state.isLegalMove(ActionPacman.get(i),as) && k--==0)
+				return(ActionPacman.get(i));
+		}
+		return(ActionPacman.get(MazePacman.STOP));//aucune action legale: reste sur place
 	}
 
 }
@@ -15,6 +15,30 @@ public class ActionPacman
 	private int vy;
 	private int direction;
 	
+	/** Les 5 actions, indexees par direction: une action est immuable et peut etre partagee, voir {@link #get(int)} */
+	private static final ActionPacman[] ACTIONS={
+			new ActionPacman(MazePacman.NORTH),
+			new ActionPacman(MazePacman.SOUTH),
+			new ActionPacman(MazePacman.EAST),
+			new ActionPacman(MazePacman.WEST),
+			new ActionPacman(MazePacman.STOP)
+	};
+	
+	/**
+	 * Renvoie l'action partagee correspondant a une direction, sans allocation
+	 * @param direction la direction: Maze.NORTH=0, Maze.SOUTH=1, Maze.EAST=2, Maze.WEST=3, Maze.STOP=4
+	 * @return l'action; une direction inconnue donne STOP, comme avec le constructeur
+	 */
+	public static ActionPacman get(int direction)
+	{
+		if (direction<0 || direction>=ACTIONS.length)
+		{
+			System.err.println("Unknown direction in AgentAction....");
+			return(ACTIONS[MazePacman.STOP]);
+		}
+		return(ACTIONS[direction]);
+	}
+	
 	/**
 	 * Construit une action a partir d'une direction: Maze.NORTH=0, Maze.SOUTH=1, Maze.EAST=2, Maze.WEST=3, Maze.STOP=4
 	 * @param direction la direction
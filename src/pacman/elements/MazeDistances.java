@@ -0,0 +1,204 @@
+package pacman.elements;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Distances (en nombre de deplacements) entre les cases d'un labyrinthe, calculees par parcours en largeur en evitant
+ * les murs.
+ * <p>
+ * Les distances depuis une case source sont calculees a la premiere demande, puis conservees dans un tableau de short
+ * indexe par case (case = x + y * size_x). Les murs ne changent pas pendant une partie: une meme instance est partagee
+ * par toutes les copies d'un labyrinthe, et remplacee si un mur est modifie. Elle peut etre utilisee par plusieurs
+ * threads a la fois (parties en parallele): les tableaux calcules sont publies par des references atomiques.
+ * <p>
+ * Le parcours en largeur depuis une source donne aussi l'ordre des cases par distance croissante: il est garde avec les
+ * distances, pour les recherches de la case la plus proche (ou des cases dans un rayon) qui s'arretent des que la
+ * reponse est connue, sans parcourir toutes les cases. Pour la distance euclidienne, les decalages (dx,dy) tries par
+ * distance croissante jouent le meme role ({@link #getDecalages()}).
+ */
+public class MazeDistances {
+	
+	/**
+	 * Distance of a cell that cannot be reached from the source.
+	 */
+	public static final short UNREACHABLE = -1;
+	
+	private final int sizeX;
+	private final int sizeY;
+	
+	/**
+	 * Snapshot of the walls of the maze, indexed by cell.
+	 */
+	private final boolean[] walls;
+	
+	/**
+	 * rows[source][cell] is the distance between `source` and `cell`, or null if it has not been computed yet.
+	 */
+	private final AtomicReferenceArray<short[]> rows;
+	/**
+	 * orders[source] lists the cells reachable from `source` by increasing distance, or null if it has not been computed
+	 * yet.
+	 */
+	private final AtomicReferenceArray<int[]> orders;
+	
+	/**
+	 * The offsets (dx,dy) sorted by increasing dx^2 + dy^2, created the first time they are asked.
+	 */
+	private volatile int[][] decalages;
+	
+	/**
+	 * Prepare the distances of `maze`. No distance is computed until it is asked.
+	 * @param maze The maze.
+	 */
+	public MazeDistances(@NotNull MazePacman maze) {
+		sizeX = maze.getSizeX();
+		sizeY = maze.getSizeY();
+		
+		walls = new boolean[sizeX * sizeY];
+		for (int x = 0; x < sizeX; x++)
+			for (int y = 0; y < sizeY; y++)
+				walls[getCell(x, y)] = maze.isWall(x, y);
+		
+		rows = new AtomicReferenceArray<>(sizeX * sizeY);
+		orders = new AtomicReferenceArray<>(sizeX * sizeY);
+	}
+	
+	/* METHODS */
+	
+	/**
+	 * @return Return the index of the cell (x,y).
+	 */
+	public int getCell(int x, int y) {
+		return x + y * sizeX;
+	}
+	
+	/**
+	 * Get the distances from the cell (x,y) to all the cells of the maze. They are computed the first time.
+	 * @param x The X coordinate of the source.
+	 * @param y The Y coordinate of the source.
+	 * @return Return the distances indexed by cell ({@link #UNREACHABLE} for walls and unreachable cells). The array must
+	 * not be modified.
+	 */
+	@NotNull
+	public short[] getDistances(int x, int y) {
+		int source = getCell(x, y);
+		short[] row = rows.get(source);
+		if (row == null) {
+			// Two threads may compute the same row: the results are equal, and both are fully built before they are
+			// published by the atomic array
+			row = bfs(source);
+		}
+		
+		return row;
+	}
+	
+	/**
+	 * Get the cells reachable from (x,y), sorted by increasing distance (the source first). They are computed with the
+	 * distances.
+	 * @param x The X coordinate of the source.
+	 * @param y The Y coordinate of the source.
+	 * @return Return the cells. The array must not be modified.
+	 */
+	@NotNull
+	public int[] getOrdre(int x, int y) {
+		int source = getCell(x, y);
+		int[] order = orders.get(source);
+		if (order == null) {
+			bfs(source);
+			order = orders.get(source);
+		}
+		
+		return order;
+	}
+	
+	/**
+	 * Get all the offsets (dx,dy) with |dx| < sizeX and |dy| < sizeY, sorted by increasing euclidean length. From any
+	 * cell, reading the cells (x+dx, y+dy) in this order visits the cells of the maze by increasing euclidean distance.
+	 * @return Return {dx, dy, dx^2 + dy^2}, three arrays of the same length. They must not be modified.
+	 */
+	@NotNull
+	public int[][] getDecalages() {
+		int[][] d = decalages;
+		if (d == null) {
+			int n = (2 * sizeX - 1) * (2 * sizeY - 1);
+			long[] cles = new long[n];
+			int k = 0;
+			for (int dx = -(sizeX - 1); dx < sizeX; dx++)
+				for (int dy = -(sizeY - 1); dy < sizeY; dy++, k++)
+					cles[k] = ((long) (dx * dx + dy * dy) << 32) | k;
+			Arrays.sort(cles);
+			
+			d = new int[3][n];
+			for (k = 0; k < n; k++) {
+				int i = (int) cles[k];
+				d[0][k] = i / (2 * sizeY - 1) - (sizeX - 1);
+				d[1][k] = i % (2 * sizeY - 1) - (sizeY - 1);
+				d[2][k] = (int) (cles[k] >>> 32);
+			}
+			decalages = d;
+		}
+		
+		return d;
+	}
+	
+	/**
+	 * @return Return the distance between (x1,y1) and (x2,y2), or {@link #UNREACHABLE}.
+	 */
+	public int getDistance(int x1, int y1, int x2, int y2) {
+		return getDistances(x1, y1)[getCell(x2, y2)];
+	}
+	
+	private short[] bfs(int source) {
+		short[] distances = new short[walls.length];
+		Arrays.fill(distances, UNREACHABLE);
+		
+		int[] queue = new int[walls.length];
+		int head = 0;
+		int tail = 0;
+		
+		distances[source] = 0;
+		queue[tail++] = source;
+		while (head < tail) {
+			int cell = queue[head++];
+			int x = cell % sizeX;
+			int y = cell / sizeX;
+			short next = (short) (distances[cell] + 1);
+			
+			if (x > 0)
+				tail = visit(cell - 1, next, distances, queue, tail);
+			if (x < sizeX - 1)
+				tail = visit(cell + 1, next, distances, queue, tail);
+			if (y > 0)
+				tail = visit(cell - sizeX, next, distances, queue, tail);
+			if (y < sizeY - 1)
+				tail = visit(cell + sizeX, next, distances, queue, tail);
+		}
+		
+		// The queue holds the reachable cells in the order of the search, i.e. by increasing distance
+		orders.set(source, Arrays.copyOf(queue, tail));
+		rows.set(source, distances);
+		return distances;
+	}
+	
+	private int visit(int cell, short distance, short[] distances, int[] queue, int tail) {
+		if (!walls[cell] && distances[cell] == UNREACHABLE) {
+			distances[cell] = distance;
+			queue[tail++] = cell;
+		}
+		
+		return tail;
+	}
+	
+	/* GETTERS */
+	
+	public int getSizeX() {
+		return sizeX;
+	}
+	
+	public int getSizeY() {
+		return sizeY;
+	}
+}
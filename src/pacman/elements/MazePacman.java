@@ -39,15 +39,30 @@ public class MazePacman
 	protected int size_x;
 	/** Hauteur du labyrinthe*/
 	protected int size_y;
-	protected boolean walls[][];
-	protected boolean food[][];
-	protected boolean capsules[][];
+	/** Murs, food et capsules en bitsets: la case (x,y) est le bit x + y*size_x (cf. {@link #getCell})*/
+	protected long walls[];
+	protected long food[];
+	protected long capsules[];
+	/**
+	 * Copy-on-write: vrai si le bitset est partage avec une copie du labyrinthe. Il est alors copie avant sa premiere
+	 * modification (cf. {@link #copy})
+	 */
+	private boolean wallsPartages;
+	private boolean foodPartage;
+	private boolean capsulesPartages;
 	/** Nb de food / dot*/
 	protected int nbfood;
+	/**
+	 * Signature des food: ou exclusif des cles aleatoires {@link #cleFood(int)} des cases qui ont une food (hachage de
+	 * Zobrist), mise a jour par setFood
+	 */
+	protected long signatureFood;
 	/** Nb de capsules / bigdot*/
 	protected int nbcapsule;
 	/** Nb de murs*/
 	protected int nbwall;
+	/** Distances entre les cases, calculees a la demande et partagees par les copies du labyrinthe (null si a recalculer)*/
+	protected MazeDistances distances;
 
 	/**
 	 * coordonnees initiales des pacmans et des fantomes
@@ -67,15 +82,39 @@ public class MazePacman
 		nbfood=0;
 		nbcapsule=0;
 		nbwall=0;
-		walls=new boolean[size_x][size_y];
-		food=new boolean[size_x][size_y];
-		capsules=new boolean[size_x][size_y];
+		walls=new long[(size_x*size_y+63)/64];
+		food=new long[(size_x*size_y+63)/64];
+		capsules=new long[(size_x*size_y+63)/64];
 		ghosts_start_x=new ArrayList<Integer>();
 		ghosts_start_y=new ArrayList<Integer>();
 		pacman_start_x=new ArrayList<Integer>();
 		pacman_start_y=new ArrayList<Integer>();
 	}
 	
+	/**
+	 * Copie partageant les bitsets de m (copy-on-write), cf. {@link #copy}
+	 */
+	private MazePacman(MazePacman m)
+	{
+		size_x=m.size_x;
+		size_y=m.size_y;
+		nbfood=m.nbfood;
+		signatureFood=m.signatureFood;
+		nbcapsule=m.nbcapsule;
+		nbwall=m.nbwall;
+		walls=m.walls;
+		food=m.food;
+		capsules=m.capsules;
+		wallsPartages=m.wallsPartages=true;
+		foodPartage=m.foodPartage=true;
+		capsulesPartages=m.capsulesPartages=true;
+		distances=m.distances;
+		ghosts_start_x=new ArrayList<Integer>(m.ghosts_start_x);
+		ghosts_start_y=new ArrayList<Integer>(m.ghosts_start_y);
+		pacman_start_x=new ArrayList<Integer>(m.pacman_start_x);
+		pacman_start_y=new ArrayList<Integer>(m.pacman_start_y);
+	}
+	
 	/**
 	 * Permet de construire un labyrinthe a partir d'un fichier
 	 * @param filename
@@ -105,9 +144,9 @@ public class MazePacman
 			//Initialisation du maze
 			size_x=nbX;
 			size_y=nbY;
-			walls=new boolean[size_x][size_y];
-			food=new boolean[size_x][size_y];
-			capsules=new boolean[size_x][size_y];
+			walls=new long[(size_x*size_y+63)/64];
+			food=new long[(size_x*size_y+63)/64];
+			capsules=new long[(size_x*size_y+63)/64];
 			ghosts_start_x=new ArrayList<Integer>();
 			ghosts_start_y=new ArrayList<Integer>();
 			pacman_start_x=new ArrayList<Integer>();
@@ -124,9 +163,9 @@ public class MazePacman
 
 				for(int x=0;x<ligne.length();x++)
 				{
-					if (ligne.charAt(x)=='%') {walls[x][y]=true; nbwall++;} else walls[x][y]=false;
-					if (ligne.charAt(x)=='.') {food[x][y]=true; nbfood++;} else food[x][y]=false;
-					if (ligne.charAt(x)=='o') {capsules[x][y]=true; nbcapsule++;} else capsules[x][y]=false;
+					if (ligne.charAt(x)=='%') {setBit(walls, x, y, true); nbwall++;}
+					if (ligne.charAt(x)=='.') {setBit(food, x, y, true); nbfood++; signatureFood^=cleFood(getCell(x, y));}
+					if (ligne.charAt(x)=='o') {setBit(capsules, x, y, true); nbcapsule++;}
 					if (ligne.charAt(x)=='P') {pacman_start_x.add(x); pacman_start_y.add(y);}
 					if (ligne.charAt(x)=='G') {ghosts_start_x.add(x); ghosts_start_y.add(y);}
 				}
@@ -137,10 +176,10 @@ public class MazePacman
 			if (pacman_start_x.size()==0)throw new MazeException("Wrong input format: must specify a Pacman start");
 			
 			//On verifie que le labyrinthe est clos			
-			for(int x=0;x<size_x;x++) if (!walls[x][0]) throw new MazeException("Wrong input format: the maze must be closed");
-			for(int x=0;x<size_x;x++) if (!walls[x][size_y-1]) throw new MazeException("Wrong input format: the maze must be closed");
-			for(y=0;y<size_y;y++) if (!walls[0][y]) throw new MazeException("Wrong input format: the maze must be closed");
-			for(y=0;y<size_y;y++) if (!walls[size_x-1][y]) throw new MazeException("Wrong input format: the maze must be closed");
+			for(int x=0;x<size_x;x++) if (!isWall(x, 0)) throw new MazeException("Wrong input format: the maze must be closed");
+			for(int x=0;x<size_x;x++) if (!isWall(x, size_y-1)) throw new MazeException("Wrong input format: the maze must be closed");
+			for(y=0;y<size_y;y++) if (!isWall(0, y)) throw new MazeException("Wrong input format: the maze must be closed");
+			for(y=0;y<size_y;y++) if (!isWall(size_x-1, y)) throw new MazeException("Wrong input format: the maze must be closed");
 			//System.out.println("### Maze loaded.");
 			
 		}		
@@ -170,6 +209,57 @@ public class MazePacman
 		return index/size_x;
 	}
 	
+	/**
+	 * @return l'indice de la case (x,y) dans les bitsets: x + y*size_x
+	 */
+	public int getCell(int x,int y) {return(x+y*size_x);}
+	
+	private boolean getBit(long[] bits,int x,int y)
+	{
+		int cell=x+y*size_x;
+		return((bits[cell>>>6]&(1L<<cell))!=0);
+	}
+	
+	private void setBit(long[] bits,int x,int y,boolean b)
+	{
+		int cell=x+y*size_x;
+		if (b) bits[cell>>>6]|=1L<<cell;
+		else bits[cell>>>6]&=~(1L<<cell);
+	}
+	
+	/**
+	 * @return l'indice de la premiere case d'indice >= cell dont le bit est a 1, -1 s'il n'y en a pas
+	 */
+	private int nextBit(long[] bits,int cell)
+	{
+		int w=cell>>>6;
+		if (w>=bits.length) return(-1);
+		long word=bits[w]&(-1L<<cell);
+		while (word==0)
+		{
+			if (++w==bits.length) return(-1);
+			word=bits[w];
+		}
+		return((w<<6)+Long.numberOfTrailingZeros(word));
+	}
+	
+	/**
+	 * Parcours des food sans allocation, sur l'etat courant du labyrinthe:
+	 * for (int c=maze.nextFood(0); c>=0; c=maze.nextFood(c+1)) {x=maze.indexToX(c); y=maze.indexToY(c); ...}
+	 * @return l'indice (voir {@link #getCell(int, int)}) de la premiere food d'indice >= cell, -1 s'il n'y en a pas
+	 */
+	public int nextFood(int cell) {return(nextBit(food, cell));}
+	
+	/**
+	 * @return l'indice de la premiere capsule d'indice >= cell, -1 s'il n'y en a pas (voir {@link #nextFood(int)})
+	 */
+	public int nextCapsule(int cell) {return(nextBit(capsules, cell));}
+	
+	/**
+	 * @return l'indice du premier mur d'indice >= cell, -1 s'il n'y en a pas (voir {@link #nextFood(int)})
+	 */
+	public int nextWall(int cell) {return(nextBit(walls, cell));}
+	
 	/**
 	 * @return la taille X du labyrinthe
 	 */
@@ -187,7 +277,7 @@ public class MazePacman
 	{
 		assert((x>=0) && (x<size_x));
 		assert((y>=0) && (y<size_y));
-		return(walls[x][y]);
+		return(getBit(walls, x, y));
 	}
 	
 	/**
@@ -197,7 +287,7 @@ public class MazePacman
 	{
 		assert((x>=0) && (x<size_x));
 		assert((y>=0) && (y<size_y));
-		return(food[x][y]);
+		return(getBit(food, x, y));
 	}
 
 	/**
@@ -207,7 +297,7 @@ public class MazePacman
 	{
 		assert((x>=0) && (x<size_x));
 		assert((y>=0) && (y<size_y));
-		return(capsules[x][y]);
+		return(getBit(capsules, x, y));
 	}
 	
 	
@@ -264,45 +354,184 @@ public class MazePacman
 	}
 	
 	public void setFood(int x,int y,boolean b) { 
-		if (b && !food[x][y]){ food[x][y]=b; nbfood++;}
-		if (!b && food[x][y]){ food[x][y]=b; nbfood--;}
+		if (b && !isFood(x, y)){ setBit(getFoodModifiable(), x, y, b); nbfood++; signatureFood^=cleFood(getCell(x, y));}
+		if (!b && isFood(x, y)){ setBit(getFoodModifiable(), x, y, b); nbfood--; signatureFood^=cleFood(getCell(x, y));}
 	}
+	
+	/**
+	 * @return la cle aleatoire (fixe) de la case cell dans la signature des food (melange splitmix64 de l'indice)
+	 */
+	private static long cleFood(int cell)
+	{
+		long z=(cell+1)*0x9E3779B97F4A7C15L;
+		z=(z^(z>>>30))*0xBF58476D1CE4E5B9L;
+		z=(z^(z>>>27))*0x94D049BB133111EBL;
+		return(z^(z>>>31));
+	}
+	
+	/**
+	 * @return la signature des food: deux labyrinthes avec les memes food ont la meme signature, et deux ensembles de
+	 * food differents ont la meme signature avec une probabilite de l'ordre de 2^-64
+	 */
+	public long getSignatureFood() {return(signatureFood);}
 	public void setCapsule(int x,int y,boolean b) {
-		if (b && !capsules[x][y]){capsules[x][y]=b; nbcapsule++;}
-		if (!b && capsules[x][y]){capsules[x][y]=b; nbcapsule--;}
+		if (b && !isCapsule(x, y)){setBit(getCapsulesModifiable(), x, y, b); nbcapsule++;}
+		if (!b && isCapsule(x, y)){setBit(getCapsulesModifiable(), x, y, b); nbcapsule--;}
 		
 	}
 	public void setWall(int x,int y,boolean b) {
-		if (b && !walls[x][y]) {walls[x][y]=b; nbwall++;}
-		if (!b && walls[x][y]) {walls[x][y]=b; nbwall--;}
+		if (b && !isWall(x, y)) {setBit(getWallsModifiable(), x, y, b); nbwall++; distances=null;}
+		if (!b && isWall(x, y)) {setBit(getWallsModifiable(), x, y, b); nbwall--; distances=null;}
 		}
+	
+	/** @return le bitset des food, copie s'il est partage avec une copie du labyrinthe*/
+	private long[] getFoodModifiable() {
+		if (foodPartage) {food=food.clone(); foodPartage=false;}
+		return(food);
+	}
+	/** @return le bitset des capsules, copie s'il est partage avec une copie du labyrinthe*/
+	private long[] getCapsulesModifiable() {
+		if (capsulesPartages) {capsules=capsules.clone(); capsulesPartages=false;}
+		return(capsules);
+	}
+	/** @return le bitset des murs, copie s'il est partage avec une copie du labyrinthe*/
+	private long[] getWallsModifiable() {
+		if (wallsPartages) {walls=walls.clone(); wallsPartages=false;}
+		return(walls);
+	}
+	
+	/**
+	 * @return vrai s'il ne reste ni food ni capsule (compteurs mis a jour par setFood et setCapsule)
+	 */
+	public boolean isEmpty() {return(nbfood==0 && nbcapsule==0);}
 	public void setSizeX(int x) {size_x=x;}
 	public void setSizeY(int x) {size_x=x;}
 	public void addPacmanStart(int x,int y) {pacman_start_x.add(x); pacman_start_y.add(y);}
-	public void addGhostStart(int x,int y) {ghosts_start_x.add(x); ghosts_start_x.add(y);}
+	public void addGhostStart(int x,int y) {ghosts_start_x.add(x); ghosts_start_y.add(y);}
 	
 	
+	/**
+	 * Copie le labyrinthe en O(nb d'agents): les bitsets sont partages avec la copie et ne sont recopies que lorsque l'un
+	 * des deux labyrinthes les modifie (copy-on-write). Les distances entre cases (qui ne dependent que des murs) sont
+	 * aussi partagees.
+	 */
 	public MazePacman copy()
 	{
-		MazePacman m=new MazePacman(getSizeX(),getSizeY());
-		m.setNbcapsule(this.getNbcapsule());
-		m.setNbfood(this.getNbfood());
-		m.setNbwall(this.getNbwall());
-		for(int x=0;x<size_x;x++)
-			for(int y=0;y<size_y;y++)
+		return(new MazePacman(this));
+	}
+	
+	/**
+	 * @return les distances entre les cases du labyrinthe {@link MazeDistances}, creees a la premiere demande
+	 */
+	public MazeDistances getDistances()
+	{
+		MazeDistances d=distances;
+		if (d==null)
+		{
+			d=new MazeDistances(this);
+			distances=d;
+		}
+		return(d);
+	}
+	
+	/**
+	 * @return la distance (en nb de cellules, en evitant les murs) entre (x1,y1) et (x2,y2), -1 si inatteignable
+	 */
+	public int getDistance(int x1,int y1,int x2,int y2)
+	{
+		return(getDistances().getDistance(x1, y1, x2, y2));
+	}
+	
+	/**
+	 * Les cases sont lues par distance croissante depuis (x,y) ({@link MazeDistances#getOrdre(int, int)}), jusqu'a la
+	 * premiere food. S'il faut lire plus de cases qu'il ne reste de food, le bitset des food est parcouru a la place.
+	 * @return la distance (en nb de cellules, en evitant les murs) entre (x,y) et la food la plus proche, -1 si aucune food atteignable
+	 */
+	public int getClosestFoodDistance(int x,int y)
+	{
+		MazeDistances distances=getDistances();
+		short[] d=distances.getDistances(x, y);
+		int[] ordre=distances.getOrdre(x, y);
+		int n=Math.min(ordre.length, nbfood);
+		for(int k=0;k<n;k++)
+		{
+			int cell=ordre[k];
+			if ((food[cell>>>6]&(1L<<cell))!=0) return(d[cell]);
+		}
+		if (n==ordre.length) return(-1);
+		
+		int best=-1;
+		for(int w=0;w<food.length;w++)
+		{
+			long word=food[w];
+			while (word!=0)
 			{
-				m.setCapsule(x, y, capsules[x][y]);
-				m.setWall(x, y, walls[x][y]);
-				m.setFood(x, y, food[x][y]);
+				int cell=(w<<6)+Long.numberOfTrailingZeros(word);
+				word&=word-1;
+				int dist=d[cell];
+				if (dist!=MazeDistances.UNREACHABLE && (best==-1 || dist<best)) best=dist;
 			}
-		
-		for(int i=0;i<pacman_start_x.size();i++)
-			m.addPacmanStart(pacman_start_x.get(i),pacman_start_y.get(i));
-
-		for(int i=0;i<ghosts_start_x.size();i++)
-			m.addPacmanStart(ghosts_start_x.get(i),ghosts_start_y.get(i));		
-		
-		return(m);
+		}
+		return(best);
+	}
+	
+	/**
+	 * @return le nombre de food a une distance (en nb de cellules, en evitant les murs) inferieure ou egale a rayon de (x,y)
+	 */
+	public int getNbFoodInRadius(int x,int y,int rayon)
+	{
+		MazeDistances distances=getDistances();
+		short[] d=distances.getDistances(x, y);
+		int[] ordre=distances.getOrdre(x, y);
+		int nb=0;
+		for(int k=0;k<ordre.length && d[ordre[k]]<=rayon;k++)
+		{
+			int cell=ordre[k];
+			if ((food[cell>>>6]&(1L<<cell))!=0) nb++;
+		}
+		return(nb);
+	}
+	
+	/**
+	 * Les cases sont lues par distance euclidienne croissante depuis (x,y) ({@link MazeDistances#getDecalages()}), jusqu'a
+	 * la premiere food. S'il faut lire plus de cases qu'il ne reste de food, le bitset des food est parcouru a la place.
+	 * @return l'indice (voir {@link #getCell(int, int)}) de la food la plus proche de (x,y) en distance euclidienne, sans
+	 * tenir compte des murs (a distance egale, celle de plus petit x, puis de plus petit y), -1 s'il n'y a pas de food
+	 */
+	public int getClosestFoodEuclidean(int x,int y)
+	{
+		int[][] decalages=getDistances().getDecalages();
+		int[] dxs=decalages[0], dys=decalages[1], d2s=decalages[2];
+		int budget=nbfood;
+		int bestX=-1, bestY=-1, bestD2=-1;
+		for(int k=0;k<d2s.length;k++)
+		{
+			if (bestX>=0 && d2s[k]>bestD2) break;
+			int cx=x+dxs[k], cy=y+dys[k];
+			if (cx<0 || cx>=size_x || cy<0 || cy>=size_y) continue;
+			if (getBit(food, cx, cy))
+			{
+				if (bestX<0 || cx<bestX || (cx==bestX && cy<bestY)) {bestX=cx; bestY=cy; bestD2=d2s[k];}
+			}
+			else if (bestX<0 && --budget<0) return(getClosestFoodEuclideanScan(x, y));
+		}
+		return(bestX<0 ? -1 : getCell(bestX, bestY));
+	}
+	
+	/**
+	 * Meme resultat que {@link #getClosestFoodEuclidean(int, int)}, en parcourant toutes les food.
+	 */
+	private int getClosestFoodEuclideanScan(int x,int y)
+	{
+		int bestX=-1, bestY=-1, bestD2=Integer.MAX_VALUE;
+		for (int cell=nextFood(0); cell>=0; cell=nextFood(cell+1))
+		{
+			int cx=indexToX(cell), cy=indexToY(cell);
+			int d2=(cx-x)*(cx-x)+(cy-y)*(cy-y);
+			// Les cases sont lues par y puis x croissants: a distance egale, garder le plus petit x
+			if (d2<bestD2 || (d2==bestD2 && cx<bestX)) {bestX=cx; bestY=cy; bestD2=d2;}
+		}
+		return(bestX<0 ? -1 : getCell(bestX, bestY));
 	}
 
 	public int getNbfood() {
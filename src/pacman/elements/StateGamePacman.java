@@ -5,7 +5,6 @@ import java.util.List;
 import java.util.Objects;
 
 import environnement.Etat;
-import javafx.util.Pair;
 
 
 
@@ -97,12 +96,11 @@ public class StateGamePacman implements Etat//TODO verifier hashcode, equals et
 	
 	
 	///////////// MISE A JOUR DU JEU SELON ACTIONS AGENTS /////////////////
-	/** Appele {@link #updatePacmans}  avec une seule action */
+	/** Bouge le premier pacman avec une seule action, comme {@link #updatePacmans} (sans allouer de liste) */
 	public void updatePacman(ActionPacman pacmanAction)
 	{
-		ArrayList<ActionPacman> p=new ArrayList<ActionPacman>();
-		p.add(pacmanAction);		
-		updatePacmans(p);
+		movePacman(0,pacmanAction);
+		finUpdatePacmans(1);
 	}
 	/**
 	 * Bouge chaque pacman selon les actions en parametre, met a jour le labyrinthe (inclut calcul du score), 
@@ -116,20 +114,30 @@ public class StateGamePacman implements Etat//TODO verifier hashcode, equals et
 		{
 			movePacman(i,pacmansActions.get(i));
 		}
-		
+		finUpdatePacmans(pacmansActions.size());
+	}
+	/**
+	 * Comme {@link #updatePacmans(ArrayList)}, avec un tableau d'actions (reutilisable d'un tour a l'autre)
+	 * @param pacmansActions
+	 */
+	public void updatePacmans(ActionPacman[] pacmansActions)
+	{
+		assert(getNumberOfPacmans()==pacmansActions.length);
+		for(int i=0;i<pacmansActions.length;i++)
+		{
+			movePacman(i,pacmansActions[i]);
+		}
+		finUpdatePacmans(pacmansActions.length);
+	}
+	/** Fin d'un tour des pacmans: labyrinthe, gagne, scared timer des nb premiers pacmans, perd */
+	private void finUpdatePacmans(int nb)
+	{
 		updateMaze();
 		
-		//Win ? 
-		boolean b=true;
-		for(int x=0;x<maze.getSizeX();x++)
-			for(int y=0;y<maze.getSizeY();y++)
-			{
-				if ((maze.isFood(x, y)) || (maze.isCapsule(x, y)))
-					b=false;
-			}
-		win=b;
+		//Win ? (compteurs de food et capsules du labyrinthe)
+		win=maze.isEmpty();
 
-		for(int i=0;i<pacmansActions.size();i++)
+		for(int i=0;i<nb;i++)
 		{
 			if (pacmans_states.get(i).isScarred())
 			{
@@ -139,7 +147,7 @@ public class StateGamePacman implements Etat//TODO verifier hashcode, equals et
 		step++;	
 
 		//Lose ? 
-		b=true;
+		boolean b=true;
 		for(int i=0;i<getNumberOfPacmans();i++)
 			if (!pacmans_states.get(i).isDead()) b=false;
 		lose=b;	
@@ -147,12 +155,11 @@ public class StateGamePacman implements Etat//TODO verifier hashcode, equals et
 
 		
 	}
-	/** Appele {@link #updateGhosts}  avec une seule action */
+	/** Bouge le premier fantome avec une seule action, comme {@link #updateGhosts} (sans allouer de liste) */
 	public void updateGhost(ActionPacman ga)
 	{
-		ArrayList<ActionPacman> p=new ArrayList<ActionPacman>();
-		p.add(ga);		
-		updateGhosts(p);
+		moveGhost(0,ga);
+		finUpdateGhosts(1);
 	}
 	
 	/**
@@ -169,20 +176,32 @@ public class StateGamePacman implements Etat//TODO verifier hashcode, equals et
 		{
 			moveGhost(i,ghostsActions.get(i));
 		}		
+		finUpdateGhosts(ghostsActions.size());
+	}
+	/**
+	 * Comme {@link #updateGhosts(ArrayList)}, avec un tableau d'actions (reutilisable d'un tour a l'autre)
+	 * @param ghostsActions
+	 */
+	public void updateGhosts(ActionPacman[] ghostsActions)
+	{
+		assert(getNumberOfGhosts()==ghostsActions.length);
+		
+		for(int i=0;i<ghostsActions.length;i++)
+		{
+			moveGhost(i,ghostsActions[i]);
+		}
+		finUpdateGhosts(ghostsActions.length);
+	}
+	/** Fin d'un tour des fantomes: labyrinthe, gagne, scared timer des nb premiers fantomes, perd, score de fin de partie */
+	private void finUpdateGhosts(int nb)
+	{
 		updateMaze();
 		
 		
-		//Win ? 
-		boolean b=true;
-		for(int x=0;x<maze.getSizeX();x++)
-			for(int y=0;y<maze.getSizeY();y++)
-			{
-				if ((maze.isFood(x, y)) || (maze.isCapsule(x, y)))
-					b=false;
-			}
-		win=b;
+		//Win ? (compteurs de food et capsules du labyrinthe)
+		win=maze.isEmpty();
 
-		for(int i=0;i<ghostsActions.size();i++)
+		for(int i=0;i<nb;i++)
 		{
 			if (ghosts_states.get(i).isScarred())
 			{
@@ -192,7 +211,7 @@ public class StateGamePacman implements Etat//TODO verifier hashcode, equals et
 
 
 		//Lose ? 
-		b=true;
+		boolean b=true;
 		for(int i=0;i<getNumberOfPacmans();i++)
 			if (!pacmans_states.get(i).isDead()) b=false;
 		lose=b;
@@ -665,35 +684,34 @@ public class StateGamePacman implements Etat//TODO verifier hashcode, equals et
 	 * @return distance (en nb de cellules) entre coord X,Y de state et plus proche dot/food
 	 */
 	public int getClosestDot(StateAgentPacman state){
-		//list des coord X,Y a tester: init avec coord de depart
-		List<Pair<Integer,Integer>> lcoord = new ArrayList<Pair<Integer,Integer>>();
-		lcoord.add(new Pair<Integer,Integer>(state.getX(),state.getY()));
-
-		//liste des distances depuis state de chaque paire de lcoord : init avec dist=0 pour coord de depart
-		List<Integer> ldist = new ArrayList<Integer>();
-		ldist.add(0);		
-		//liste des coord testes
-		List<Pair<Integer,Integer>> lexpanded = new ArrayList<Pair<Integer,Integer>>();
-		
-		//evalue chq element de lcoord, si pas de food dans element, etend en regardant position atteignable depuis elemnt.
-		while (!lcoord.isEmpty()){
-			Pair<Integer,Integer> pair = lcoord.remove(0);
-			int dist = ldist.remove(0);
-			if (lexpanded.contains(pair)){
-				continue;
-			}
-			lexpanded.add(pair);
-			if (this.getMaze().isFood(pair.getKey(), pair.getValue())){
-				return dist;
-			}
-			//ajoute dans list a tester les cellules a voisine a cellule courante
-			for (int i=0; i<4; i++){
-				int[] new_s = this.getNextPosition(new ActionPacman(i), new StateAgentPacman(pair.getKey(), pair.getValue()));
-				lcoord.add(new Pair<Integer,Integer>(new_s[0],new_s[1]));
-				ldist.add(dist+1);
-			}
+		//distances precalculees par parcours en largeur depuis la case de state (cf. MazePacman::getClosestFoodDistance)
+		return maze.getClosestFoodDistance(state.getX(), state.getY());
+	}
+	
+	/**
+	 * 
+	 * @param a
+	 * @param b
+	 * @return distance (en nb de cellules, en evitant les murs) entre a et b, -1 si b inatteignable depuis a
+	 */
+	public int getMazeDistance(StateAgentPacman a, StateAgentPacman b){
+		return maze.getDistance(a.getX(), a.getY(), b.getX(), b.getY());
+	}
+	
+	/**
+	 * 
+	 * @param state
+	 * @return distance (en nb de cellules, en evitant les murs) entre coord X,Y de state et plus proche fantome, -1 si aucun
+	 */
+	public int getClosestGhost(StateAgentPacman state){
+		short[] d = maze.getDistances().getDistances(state.getX(), state.getY());
+		int best = -1;
+		for (StateAgentPacman ghost : ghosts_states){
+			int dist = d[maze.getDistances().getCell(ghost.getX(), ghost.getY())];
+			if (dist != MazeDistances.UNREACHABLE && (best == -1 || dist < best))
+				best = dist;
 		}
-		return -1;
+		return best;
 	}
 	
 	
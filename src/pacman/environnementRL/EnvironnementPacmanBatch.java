@@ -0,0 +1,241 @@
+package pacman.environnementRL;
+
+import agent.RandomProvider;
+import agent.rlagent.EnvironnementBatch;
+import environnement.Action;
+import environnement.Etat;
+import pacman.elements.ActionPacman;
+import pacman.elements.StateGamePacman;
+import pacman.game.GamePacman;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Plusieurs parties de pacman independantes jouees en meme temps, pour RL feature (les etats sont des
+ * {@link StateGamePacman}).
+ * <p>
+ * Chaque partie est un {@link EnvironnementPacmanFeatureRL} headless, mais les pas sont joues directement sur son jeu:
+ * aucun observateur n'est notifie. Les parties peuvent etre jouees en parallele sur plusieurs coeurs, dans un pool de
+ * threads propre au batch ({@link #setParallele(boolean)}). Les etats renvoyes sont des copies, qui ne sont pas
+ * modifiees par les pas suivants.
+ * <p>
+ * Chaque partie tire ses nombres aleatoires (par ex. les fantomes) dans son propre flux ({@link RandomProvider}), dont la
+ * graine est tiree a la construction: apres {@link RandomProvider#setGraine(long)}, les parties sont les memes en
+ * sequentiel et en parallele.
+ */
+public class EnvironnementPacmanBatch implements EnvironnementBatch {
+	
+	private final EnvironnementPacmanFeatureRL[] envs;
+	/** flux aleatoire de chaque partie, utilise par le thread qui la joue */
+	private final SplittableRandom[] flux;
+	
+	private final StateGamePacman[] etats;
+	private final StateGamePacman[] etatsSuivants;
+	private final double[] recompenses;
+	private final boolean[] absorbants;
+	private final boolean[] finis;
+	/** nombre de pas de l'episode en cours de chaque partie */
+	private final int[] nbpas;
+	
+	/** une partie est arretee (et remise a zero) apres maxnbpas pas */
+	private int maxnbpas = Integer.MAX_VALUE;
+	/** pool des threads qui jouent les parties, null si elles sont jouees en sequentiel */
+	private ForkJoinPool pool = null;
+	
+	/**
+	 * @param _filename le fichier du labyrinthe
+	 * @param _isghostrandom pour agent fantomes aleatoires, sinon sont static
+	 * @param nbJeux le nombre de parties
+	 */
+	public EnvironnementPacmanBatch(String _filename, boolean _isghostrandom, int nbJeux) {
+		if (nbJeux < 1)
+			throw new IllegalArgumentException("The number of games must be strictly positive (given: " + nbJeux + ")");
+		
+		envs = new EnvironnementPacmanFeatureRL[nbJeux];
+		flux = new SplittableRandom[nbJeux];
+		etats = new StateGamePacman[nbJeux];
+		etatsSuivants = new StateGamePacman[nbJeux];
+		recompenses = new double[nbJeux];
+		absorbants = new boolean[nbJeux];
+		finis = new boolean[nbJeux];
+		nbpas = new int[nbJeux];
+		
+		for (int i = 0; i < nbJeux; i++) {
+			flux[i] = new SplittableRandom(RandomProvider.nouvelleGraine());
+			SplittableRandom precedent = RandomProvider.setFlux(flux[i]);
+			try {
+				envs[i] = new EnvironnementPacmanFeatureRL(_filename, _isghostrandom, true);
+			} finally {
+				RandomProvider.setFlux(precedent);
+			}
+			etats[i] = (StateGamePacman) envs[i].getEtatCourant();
+		}
+	}
+	
+	@Override
+	public int getNbEnvironnements() {
+		return envs.length;
+	}
+	
+	@Override
+	public Etat getEtat(int i) {
+		return etats[i];
+	}
+	
+	@Override
+	public List<Action> getActionsPossibles(int i) {
+		return EnvironnementPacmanRL.getActionsLegales(etats[i]);
+	}
+	
+	@Override
+	public void doActions(Action[] actions) {
+		if (actions.length != envs.length)
+			throw new IllegalArgumentException("Expected one action per game (" + envs.length + "), given: " + actions.length);
+		
+		if (pool != null)
+			pool.invoke(new PasTask(0, envs.length, actions));
+		else
+			for (int i = 0; i < envs.length; i++)
+				pas(i, actions[i]);
+	}
+	
+	/**
+	 * Un pas de la partie i, avec le flux aleatoire de la partie
+	 */
+	private void pas(int i, Action a) {
+		SplittableRandom precedent = RandomProvider.setFlux(flux[i]);
+		try {
+			joue(i, a);
+		} finally {
+			RandomProvider.setFlux(precedent);
+		}
+	}
+	
+	/**
+	 * Un pas de la partie i: bouge pacman avec a puis les fantomes, et remet la partie a zero si elle est finie
+	 */
+	private void joue(int i, Action a) {
+		GamePacman game = envs[i].getGamepacman();
+		int old_score = game.getState().getScore();
+		game.oneIteration(ActionPacman.get(a.ordinal()));
+		nbpas[i]++;
+		
+		StateGamePacman etat = (StateGamePacman) game.getState().clone();
+		recompenses[i] = etat.getScore() - old_score;
+		absorbants[i] = envs[i].estAbsorbant();
+		finis[i] = absorbants[i] || nbpas[i] >= maxnbpas;
+		etatsSuivants[i] = etat;
+		
+		if (finis[i]) {
+			envs[i].reset();
+			nbpas[i] = 0;
+			etats[i] = (StateGamePacman) envs[i].getEtatCourant();
+		}
+		else
+			etats[i] = etat;
+	}
+	
+	/**
+	 * Partie d'un pas parallele: coupe [from ; to[ en deux jusqu'a une seule partie.
+	 */
+	private class PasTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final int from;
+		private final int to;
+		private final Action[] actions;
+		
+		PasTask(int from, int to, Action[] actions) {
+			this.from = from;
+			this.to = to;
+			this.actions = actions;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				pas(from, actions[from]);
+				return;
+			}
+			
+			int middle = (from + to) >>> 1;
+			invokeAll(new PasTask(from, middle, actions), new PasTask(middle, to, actions));
+		}
+	}
+	
+	@Override
+	public Etat getEtatSuivant(int i) {
+		return etatsSuivants[i];
+	}
+	
+	@Override
+	public List<Action> getActionsSuivantes(int i) {
+		return EnvironnementPacmanRL.getActionsLegales(etatsSuivants[i]);
+	}
+	
+	@Override
+	public double getRecompense(int i) {
+		return recompenses[i];
+	}
+	
+	@Override
+	public boolean estAbsorbant(int i) {
+		return absorbants[i];
+	}
+	
+	@Override
+	public boolean estFini(int i) {
+		return finis[i];
+	}
+	
+	/**
+	 * Remet toutes les parties a zero
+	 */
+	public void reset() {
+		for (int i = 0; i < envs.length; i++) {
+			SplittableRandom precedent = RandomProvider.setFlux(flux[i]);
+			try {
+				envs[i].reset();
+			} finally {
+				RandomProvider.setFlux(precedent);
+			}
+			nbpas[i] = 0;
+			etats[i] = (StateGamePacman) envs[i].getEtatCourant();
+			etatsSuivants[i] = null;
+			recompenses[i] = 0.;
+			absorbants[i] = finis[i] = false;
+		}
+	}
+	
+	public int getMaxnbpas() {
+		return maxnbpas;
+	}
+	
+	public void setMaxnbpas(int maxnbpas) {
+		if (maxnbpas < 1)
+			throw new IllegalArgumentException("The maximum number of steps must be strictly positive (given: " + maxnbpas + ")");
+		
+		this.maxnbpas = maxnbpas;
+	}
+	
+	public boolean isParallele() {
+		return pool != null;
+	}
+	
+	/**
+	 * @param parallele pour jouer les pas des parties en parallele, sur un pool d'un thread par coeur (cree ici, et
+	 *                  arrete par setParallele(false))
+	 */
+	public void setParallele(boolean parallele) {
+		if (parallele && pool == null)
+			pool = new ForkJoinPool(Math.min(envs.length, Runtime.getRuntime().availableProcessors()));
+		else if (!parallele && pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+}
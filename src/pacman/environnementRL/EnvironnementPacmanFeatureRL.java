@@ -4,14 +4,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
-import pacman.agent.GoPacmanAgent;
-import pacman.agent.RandomPacmanAgent;
 import pacman.elements.ActionPacman;
 import pacman.elements.MazeException;
 import pacman.elements.MazePacman;
 import pacman.elements.StateAgentPacman;
 import pacman.elements.StateGamePacman;
-import pacman.game.GamePacman;
 import environnement.Action;
 import environnement.Action2D;
 import environnement.Environnement;
@@ -28,25 +25,25 @@ public class EnvironnementPacmanFeatureRL extends EnvironnementPacmanRL {
 
 	
 	public EnvironnementPacmanFeatureRL(String _filename,boolean _isghostrandom)  {
-		super(_filename,_isghostrandom);
+		this(_filename,_isghostrandom,false);
+	}
+
+	/**
+	 * @param _filename
+	 * @param _isghostrandom pour agent fantomes aleatoires, sinon sont static
+	 * @param _isheadless pour jouer sans vue ni pause, voir {@link pacman.game.GamePacmanHeadless}
+	 */
+	public EnvironnementPacmanFeatureRL(String _filename,boolean _isghostrandom,boolean _isheadless)  {
+		super(_filename,_isghostrandom,_isheadless);
 
 		StateGamePacman gamestate;
 		try {
 		//	gamestate = new StateGamePacman(new MazePacman(filename));
 		
-			etatcourant = new StateGamePacman(new MazePacman(filename));
+			mazeinitial = new MazePacman(filename);
+			etatcourant = new StateGamePacman(mazeinitial.copy());
 			//creation du jeu
-			gamepacman=new GamePacman((StateGamePacman) etatcourant);
-			//creation agent fantomes
-			//for (int i=0; i<((StateGamePacman) etatcourant).getNumberOfGhosts(); i++){
-				
-			for (int i=0; i<((StateGamePacman) etatcourant).getNumberOfGhosts(); i++){
-				if (_isghostrandom)
-					gamepacman.addGhostAgent(new RandomPacmanAgent());
-				else
-					gamepacman.addGhostAgent(new GoPacmanAgent(Action2D.NONE));
-				
-			}
+			gamepacman=creeJeu((StateGamePacman) etatcourant);
 			
 		} catch (MazeException e) {
 			// TODO Auto-generated catch block
@@ -73,7 +70,7 @@ public class EnvironnementPacmanFeatureRL extends EnvironnementPacmanRL {
 		//appele par RLAgent::runEpisode
 		int old_score = this.gamepacman.getState().getScore();
 		/** In one step, move pacman or ghost and update score**/
-		this.gamepacman.oneIteration(new ActionPacman(_a.ordinal()));;//bouge pacman avec _a puis fantomes
+		this.gamepacman.oneIteration(ActionPacman.get(_a.ordinal()));;//bouge pacman avec _a puis fantomes
 		
 		this.setEtatCourant(gamepacman.getState());
 		int new_score = this.gamepacman.getState().getScore();
@@ -89,15 +86,10 @@ public class EnvironnementPacmanFeatureRL extends EnvironnementPacmanRL {
 
 	@Override
 	public void reset() {//reset seulement le labyrinthe et etat initial des agents : fantomes identiques
-		try {
-			etatcourant = new StateGamePacman(new MazePacman(filename));
-			
-			//creation du jeu
-			gamepacman.setState((StateGamePacman) etatcourant);			
-		} catch (MazeException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}	
+		etatcourant = new StateGamePacman(mazeinitial.copy());
+		
+		//creation du jeu
+		gamepacman.setState((StateGamePacman) etatcourant);
 		
 	}
 
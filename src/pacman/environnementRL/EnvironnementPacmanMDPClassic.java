@@ -1,44 +1,63 @@
 package pacman.environnementRL;
 
 
-import pacman.agent.GoPacmanAgent;
-import pacman.agent.RandomPacmanAgent;
 import pacman.elements.ActionPacman;
 import pacman.elements.AgentPacman;
 import pacman.elements.MazeException;
 import pacman.elements.MazePacman;
 import pacman.elements.StateAgentPacman;
 import pacman.elements.StateGamePacman;
-import pacman.game.GamePacman;
 import environnement.*;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
 
 /**
  * Environnement pour RL classic dans pacman, i.e. avec etatcourant = etat complet du MDP (EtatPacmanMDPClassic): 
  * 
- * 
+ * La direction de la food la plus proche ne depend que de la case de pacman et des food restantes: elle est memorisee
+ * dans un cache LRU borne, indexe par la case de pacman et la signature des food du labyrinthe
+ * ({@link MazePacman#getSignatureFood()}). Les distances aux fantomes sont recalculees a chaque pas a partir des positions.
  */
 public class EnvironnementPacmanMDPClassic extends EnvironnementPacmanRL {
+	
+	/**
+	 * Taille par defaut du cache des directions vers la food la plus proche
+	 */
+	public static final int TAILLE_CACHE = 1 << 14;
+	
+	private int tailleCache = TAILLE_CACHE;
+	
+	/**
+	 * Cache LRU (dans l'ordre des acces, la plus ancienne en tete, retiree par creeEtat quand le cache deborde): cle de
+	 * (signature des food, case de pacman) -> direction de la food la plus proche
+	 */
+	private final LinkedHashMap<Long, Integer> cacheDirections = new LinkedHashMap<>(16, 0.75f, true);
+	private long nbAppelsCache = 0;
+	private long nbSuccesCache = 0;
 
 	
 	public EnvironnementPacmanMDPClassic(String _filename,boolean _isghostrandom)  {
-		super(_filename,_isghostrandom);
+		this(_filename,_isghostrandom,false);
+	}
+
+	/**
+	 * @param _filename
+	 * @param _isghostrandom pour agent fantomes aleatoires, sinon sont static
+	 * @param _isheadless pour jouer sans vue ni pause, voir {@link pacman.game.GamePacmanHeadless}
+	 */
+	public EnvironnementPacmanMDPClassic(String _filename,boolean _isghostrandom,boolean _isheadless)  {
+		super(_filename,_isghostrandom,_isheadless);
 
 		StateGamePacman gamestate;
 		try {
-			gamestate = new StateGamePacman(new MazePacman(filename));
+			mazeinitial = new MazePacman(filename);
+			gamestate = new StateGamePacman(mazeinitial.copy());
 			//creation du jeu
-			gamepacman=new GamePacman(gamestate);
-			//creation agent fantomes
-			for (int i=0; i<gamestate.getNumberOfGhosts(); i++){
-				if (_isghostrandom)
-					gamepacman.addGhostAgent(new RandomPacmanAgent());
-				else
-					gamepacman.addGhostAgent(new GoPacmanAgent(Action2D.NONE));
-				
-			}
+			gamepacman=creeJeu(gamestate);
 			
-			this.etatcourant = new EtatPacmanMDPClassic(gamepacman.getState());
+			this.etatcourant = creeEtat(gamepacman.getState());
 		} catch (MazeException e) {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
@@ -51,6 +70,56 @@ public class EnvironnementPacmanMDPClassic extends EnvironnementPacmanRL {
 	
 
 
+	/**
+	 * @return l'etat du MDP correspondant a l'etat du jeu, avec la direction de la food la plus proche lue dans le cache
+	 */
+	private EtatPacmanMDPClassic creeEtat(StateGamePacman state) {
+		if (tailleCache == 0)
+			return new EtatPacmanMDPClassic(state);
+		
+		MazePacman maze = state.getMaze();
+		StateAgentPacman pacman = state.getPacmanState(0);
+		long cle = maze.getSignatureFood() ^ (0xD1B54A32D192ED03L * (maze.getCell(pacman.getX(), pacman.getY()) + 1));
+		
+		nbAppelsCache++;
+		Integer direction = cacheDirections.get(cle);
+		if (direction == null) {
+			direction = EtatPacmanMDPClassic.getDirectionClosestFood(state);
+			cacheDirections.put(cle, direction);
+			if (cacheDirections.size() > tailleCache) {
+				Iterator<Long> plusAncienne = cacheDirections.keySet().iterator();
+				plusAncienne.next();
+				plusAncienne.remove();
+			}
+		}
+		else
+			nbSuccesCache++;
+		
+		return new EtatPacmanMDPClassic(state, direction);
+	}
+	
+	public int getTailleCache() {
+		return tailleCache;
+	}
+	
+	/**
+	 * @param tailleCache nombre maximum de directions memorisees (0 pour ne pas utiliser de cache)
+	 */
+	public void setTailleCache(int tailleCache) {
+		if (tailleCache < 0)
+			throw new IllegalArgumentException("The size of the cache must be positive (given: " + tailleCache + ")");
+		
+		this.tailleCache = tailleCache;
+		cacheDirections.clear();
+	}
+	
+	/**
+	 * @return la proportion des etats dont la direction de la food la plus proche a ete lue dans le cache
+	 */
+	public double getTauxSuccesCache() {
+		return nbAppelsCache == 0 ? 0. : nbSuccesCache / (double) nbAppelsCache;
+	}
+	
 	@Override
 	public void setEtatCourant(Etat e) {
 		this.etatcourant = (EtatPacmanMDPClassic) e;
@@ -65,9 +134,9 @@ public class EnvironnementPacmanMDPClassic extends EnvironnementPacmanRL {
 		//appele par RLAgent::runEpisode
 		int old_score = this.gamepacman.getState().getScore();
 		/** In one step, move pacman or ghost and update score**/
-		this.gamepacman.oneIteration(new ActionPacman(_a.ordinal()));//bouge pacman avec _a puis fantomes
+		this.gamepacman.oneIteration(ActionPacman.get(_a.ordinal()));//bouge pacman avec _a puis fantomes
 		
-		EtatPacmanMDPClassic emdp = new EtatPacmanMDPClassic(gamepacman.getState());
+		EtatPacmanMDPClassic emdp = creeEtat(gamepacman.getState());
 		//System.out.println(this.gamepacman.getState().getStep() + "> hash(etat) = " + emdp.hashCode());
 		this.setEtatCourant(emdp);
 		int new_score = this.gamepacman.getState().getScore();
@@ -83,16 +152,11 @@ public class EnvironnementPacmanMDPClassic extends EnvironnementPacmanRL {
 
 	@Override
 	public void reset() {//reset seulement le labyrinthe et etat initial des agents : fantomes identiques
-		StateGamePacman gamestate;
-		try {
-			gamestate = new StateGamePacman(new MazePacman(filename));
-			
-			//creation du jeu
-			gamepacman.setState(gamestate);
-			this.etatcourant = new EtatPacmanMDPClassic(gamepacman.getState());
-		} catch (MazeException e) {
-			e.printStackTrace();
-		}	
+		StateGamePacman gamestate = new StateGamePacman(mazeinitial.copy());
+		
+		//creation du jeu
+		gamepacman.setState(gamestate);
+		this.etatcourant = creeEtat(gamepacman.getState());
 	}
 
 
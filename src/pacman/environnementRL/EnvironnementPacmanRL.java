@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
+import pacman.agent.GoPacmanAgent;
 import pacman.agent.RandomPacmanAgent;
 import pacman.elements.ActionPacman;
 import pacman.elements.MazeException;
@@ -11,6 +12,7 @@ import pacman.elements.MazePacman;
 import pacman.elements.StateAgentPacman;
 import pacman.elements.StateGamePacman;
 import pacman.game.GamePacman;
+import pacman.game.GamePacmanHeadless;
 import environnement.Action;
 import environnement.Action2D;
 import environnement.Environnement;
@@ -29,9 +31,14 @@ public abstract class EnvironnementPacmanRL extends Environnement {
 	protected Etat etatcourant;
 	/** Pour reset le jeu, memorise le fichier du labyrinthe*/
 	protected String filename;
+	/** Pour reset le jeu, memorise le labyrinthe initial (copie a chaque reset au lieu de relire le fichier)*/
+	protected MazePacman mazeinitial;
 	protected boolean isghostrandom;
+	/** jeu sans vue ni pause ({@link GamePacmanHeadless}), pour apprendre sur un grand nombre de parties*/
+	protected boolean isheadless;
 	
 	private static int NBACTIONS = 4;//5 avec NONE possible pour pacman, 4 sinon 
+	private static final Action2D[] ACTIONS2D = Action2D.values();
 	//--> doit etre coherent avec FeatureFunctionPacman
 
 
@@ -44,11 +51,40 @@ public abstract class EnvironnementPacmanRL extends Environnement {
 	 * @throws MazeException
 	 */
 	public EnvironnementPacmanRL(String _filename,boolean _isghostrandom)  {
+		this(_filename,_isghostrandom,false);
+	}
+
+	/**
+	 * @param _filename
+	 * @param _isghostrandom pour agent fantomes aleatoires, sinon sont static
+	 * @param _isheadless pour utiliser {@link GamePacmanHeadless} (pas d'affichage possible)
+	 */
+	public EnvironnementPacmanRL(String _filename,boolean _isghostrandom,boolean _isheadless)  {
 		filename = _filename;
 		isghostrandom = _isghostrandom;
+		isheadless = _isheadless;
 		
 	}
 
+	/**
+	 * Cree le jeu de pacman et ses agents fantomes
+	 * @param gamestate etat initial du jeu
+	 */
+	protected GamePacman creeJeu(StateGamePacman gamestate) {
+		GamePacman game = isheadless ? new GamePacmanHeadless(gamestate) : new GamePacman(gamestate);
+		for (int i=0; i<gamestate.getNumberOfGhosts(); i++){
+			if (isghostrandom)
+				game.addGhostAgent(new RandomPacmanAgent());
+			else
+				game.addGhostAgent(new GoPacmanAgent(Action2D.NONE));
+		}
+		return game;
+	}
+
+	public boolean isHeadless() {
+		return isheadless;
+	}
+
 	@Override
 	public Etat getEtatCourant() {
 		//return etatcourant;//semble fonctionner maintenant
@@ -63,14 +99,20 @@ public abstract class EnvironnementPacmanRL extends Environnement {
 	//--> utilise par RLAgent::getActionsLegales
 	@Override
 	public List<Action> getActionsPossibles(Etat _e) {
-		//renvoi actions qui n'envoient pas dans mur pour _e: action pour unique pacman
+		//renvoi actions qui n'envoient pas dans mur pour l'etat courant du jeu (_e n'est pas utilise): action pour unique pacman
+		return getActionsLegales(gamepacman.getState());
+	}
+
+	/**
+	 * @param sgp un etat du jeu
+	 * @return les actions du premier pacman qui ne l'envoient pas dans un mur
+	 */
+	public static List<Action> getActionsLegales(StateGamePacman sgp) {
 				List<Action> aa=new ArrayList<Action>();
+				StateAgentPacman sap = sgp.getPacmanState(0);
 					for (int i=0; i<NBACTIONS; i++){//prend en compte action NONE
-						StateGamePacman sgp = gamepacman.getState();
-						StateAgentPacman sap = gamepacman.getState().getPacmanState(0);
-						sgp.isLegalMove(new ActionPacman(i), sap);
-						if (gamepacman.getState().isLegalMove(new ActionPacman(i), gamepacman.getState().getPacmanState(0)))
-							aa.add(Action2D.values()[i]);
+						if (sgp.isLegalMove(ActionPacman.get(i), sap))
+							aa.add(ACTIONS2D[i]);
 				}
 				return aa;
 	}
@@ -1,6 +1,6 @@
 package pacman.environnementRL;
 
-import environnement.Etat;
+import agent.rlagent.EtatCodable;
 import javafx.util.Pair;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
@@ -10,32 +10,44 @@ import pacman.elements.StateAgentPacman;
 import pacman.elements.StateGamePacman;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 import static pacman.Utils.*;
 
 /**
  * Classe pour définir un etat du MDP pour l'environnement pacman avec QLearning tabulaire
+ * <p>
+ * L'etat est range dans un seul long ({@link #getCode()}): les 3 premiers bits pour la direction de la food la plus
+ * proche, puis 6 bits par fantome proche (dans l'ordre des fantomes), qui valent 1 + l'indice de la case (dx,dy) dans
+ * le carre de cote 2 * TILE_RADIUS_GHOST_DETECTOR + 1, et 0 apres le dernier fantome. equals et hashCode ne lisent que
+ * ce code, et l'etat ne garde pas de reference vers l'etat du jeu: une table des Q-valeurs ne retient ainsi que quelques
+ * octets par etat.
  */
-public class EtatPacmanMDPClassic implements Etat, Cloneable {
+public class EtatPacmanMDPClassic implements EtatCodable, Cloneable {
 	
 	public static final int TILE_RADIUS_GHOST_DETECTOR = 3;
 	
 	/**
-	 * List of all the distances from pacman to close ghosts. Each item of the list is a pair (x ; y) that corresponds
-	 * to the distance on x-axis and y-axis.
+	 * Number of bits of the direction to the closest food, and of each close ghost in the code.
 	 */
-	private ArrayList<Pair<Integer, Integer>> distancePacmanGhosts;
+	private static final int BITS_DIRECTION = 3;
+	private static final int BITS_GHOST = 6;
+	private static final int SIDE = 2 * TILE_RADIUS_GHOST_DETECTOR + 1;
+	/**
+	 * Maximum number of close ghosts that fit in the code.
+	 */
+	public static final int MAX_CLOSE_GHOSTS = (Long.SIZE - BITS_DIRECTION) / BITS_GHOST;
 	
 	/**
-	 * Direction from pacman to the closest food.
+	 * The direction from pacman to the closest food, then the distances (x ; y) from pacman to the close ghosts.
 	 */
-	private int directionToClosestFood;
+	private long code;
 	
 	/**
-	 * The current state game. It is NOT included in the hash code and the equals method.
+	 * Number of pacmans and ghosts in the game, for {@link #getDimensions()}. They are NOT included in the hash code and
+	 * the equals method.
 	 */
-	private StateGamePacman state;
+	private int numberOfPacmans;
+	private int numberOfGhosts;
 	
 	/**
 	 * The coordinates of pacman in the grid. It is NOT included in the hash code and the equals method.
@@ -43,8 +55,17 @@ public class EtatPacmanMDPClassic implements Etat, Cloneable {
 	private StateAgentPacman pacman;
 	
 	public EtatPacmanMDPClassic(@NotNull final StateGamePacman state){
+		this(state, getDirectionClosestFood(state));
+	}
+	/**
+	 * @param state The state of the game.
+	 * @param directionClosestFood The direction from pacman to the closest food, as computed by
+	 *                             {@link #getDirectionClosestFood(StateGamePacman)} (e.g. memoized).
+	 */
+	public EtatPacmanMDPClassic(@NotNull final StateGamePacman state, int directionClosestFood){
 		// VOTRE CODE
-		this.state = state;
+		numberOfPacmans = state.getNumberOfPacmans();
+		numberOfGhosts = state.getNumberOfGhosts();
 		
 		if (state.getNumberOfPacmans() != 1)
 			System.err.println("EtatPacmanMDPClassic> Strange number of pacman: " + state.getNumberOfPacmans());
@@ -53,94 +74,133 @@ public class EtatPacmanMDPClassic implements Etat, Cloneable {
 		pacman = state.getPacmanState(0);
 		
 		// Get the closest ghosts and compute their distances from pacman, and the direction
-		distancePacmanGhosts = new ArrayList<>(state.getNumberOfGhosts());
-		
+		int nbCloseGhosts = 0;
 		for (int i = 0; i < state.getNumberOfGhosts(); i++) {
 			StateAgentPacman ghost = state.getGhostState(i);
-			// If the distance between pacman and the ghost is less or equal to 4, add it to the list
-			if (computeDistance(pacman, ghost, Distance.MANHATTAN) <= TILE_RADIUS_GHOST_DETECTOR) {
-				// Compute the distance
-				distancePacmanGhosts.add(new Pair<>(
-						pacman.getX() - ghost.getX(),
-						pacman.getY() - ghost.getY()
-				));
+			int dx = pacman.getX() - ghost.getX();
+			int dy = pacman.getY() - ghost.getY();
+			// If the distance between pacman and the ghost is less or equal to TILE_RADIUS_GHOST_DETECTOR, add it to the code
+			if (Math.abs(dx) + Math.abs(dy) <= TILE_RADIUS_GHOST_DETECTOR) {
+				if (nbCloseGhosts == MAX_CLOSE_GHOSTS)
+					throw new IllegalStateException("More than " + MAX_CLOSE_GHOSTS + " ghosts around pacman cannot be encoded");
+				
+				code |= encodeGhost(dx, dy) << (BITS_DIRECTION + nbCloseGhosts * BITS_GHOST);
+				nbCloseGhosts++;
 			}
 		}
 		
-		// Compute the distance between pacman and the closest food
-		ArrayList<StateAgentPacman> foods = convertBooleanArrayToStates(getFoods(state));
-		
-		if (!foods.isEmpty()) {
-			// Compute the direction from pacman to the nearest food
-			int direction = getDirection(pacman, Objects.requireNonNull(getClosestAgent(pacman, foods)).getKey());
-			if (isLegalMove(direction))
-				setDirectionToClosestFood(direction);
+		if (directionClosestFood == MazePacman.STOP || isLegalMove(state, directionClosestFood))
+			setDirectionToClosestFood(directionClosestFood);
+		else {
+			// If the direction is not legal, take another one randomly among the legal ones perpendicular to `direction`
+			int a, b;
+			if (directionClosestFood == MazePacman.NORTH || directionClosestFood == MazePacman.SOUTH) {
+				a = MazePacman.EAST;
+				b = MazePacman.WEST;
+			}
 			else {
-				// If the direction is not legal, take another one randomly, and perpendicular to `direction`:
-				int iter = 0;
-				do {
-					if (direction == MazePacman.NORTH || direction == MazePacman.SOUTH)
-						setDirectionToClosestFood(pickRandomly(MazePacman.EAST, MazePacman.WEST));
-					else
-						setDirectionToClosestFood(pickRandomly(MazePacman.NORTH, MazePacman.SOUTH));
-					
-					iter++;
-					if (iter >= 100) {
-						setDirectionToClosestFood(MazePacman.STOP);
-						break;
-					}
-				} while (!isLegalMove(getDirectionToClosestFood()));
+				a = MazePacman.NORTH;
+				b = MazePacman.SOUTH;
 			}
+			
+			boolean legalA = isLegalMove(state, a);
+			boolean legalB = isLegalMove(state, b);
+			if (legalA && legalB)
+				setDirectionToClosestFood(pickRandomly(a, b));
+			else if (legalA)
+				setDirectionToClosestFood(a);
+			else if (legalB)
+				setDirectionToClosestFood(b);
+			else
+				setDirectionToClosestFood(MazePacman.STOP);
 		}
-		else
-			setDirectionToClosestFood(MazePacman.STOP);
 	}
 	public EtatPacmanMDPClassic(@NotNull EtatPacmanMDPClassic etat) {
-		setDistancePacmanGhosts(etat.getDistancePacmanGhosts());
-		setDirectionToClosestFood(etat.getDirectionToClosestFood());
-		setState(etat.getState());
+		code = etat.getCode();
+		numberOfPacmans = etat.numberOfPacmans;
+		numberOfGhosts = etat.numberOfGhosts;
 		setPacman(etat.getPacman());
 	}
 	
 	/* METHODS */
 	
-	public boolean isLegalMove(int direction, @NotNull StateAgentPacman reference) {
-		return state.isLegalMove(new ActionPacman(direction), reference);
+	/**
+	 * @param state The state of the game.
+	 * @return Return the direction from the first pacman to the closest food (euclidean distance), which may lead into a
+	 * wall, or STOP if there is no food left. It only depends on the position of pacman and on the food of the maze.
+	 */
+	public static int getDirectionClosestFood(@NotNull StateGamePacman state) {
+		StateAgentPacman pacman = state.getPacmanState(0);
+		StateAgentPacman food = getClosestFood(pacman, state.getMaze()).getKey();
+		return food == null ? MazePacman.STOP : getDirection(pacman, food);
 	}
-	public boolean isLegalMove(int direction) {
-		return isLegalMove(direction, pacman);
+	
+	private boolean isLegalMove(@NotNull StateGamePacman state, int direction) {
+		return state.isLegalMove(ActionPacman.get(direction), pacman);
+	}
+	
+	/**
+	 * @return Return the value of the ghost at the distance (dx ; dy) in the code, between 1 and SIDE^2.
+	 */
+	private static long encodeGhost(int dx, int dy) {
+		return 1 + (dx + TILE_RADIUS_GHOST_DETECTOR) * SIDE + (dy + TILE_RADIUS_GHOST_DETECTOR);
 	}
 	
 	public int getDimensions() {
-		return state.getNumberOfPacmans() * (((int) Math.pow(2 * TILE_RADIUS_GHOST_DETECTOR + 1, 2)) * state.getNumberOfGhosts() * 7);
+		return numberOfPacmans * (((int) Math.pow(2 * TILE_RADIUS_GHOST_DETECTOR + 1, 2)) * numberOfGhosts * 7);
 	}
 	
 	/* GETTERS & SETTERS */
 	
+	@Override
+	public long getCode() {
+		return code;
+	}
+	
+	/**
+	 * @return Return a new list of the distances (x ; y) from pacman to the close ghosts, decoded from the code.
+	 */
 	@NotNull
 	public ArrayList<Pair<Integer, Integer>> getDistancePacmanGhosts() {
+		ArrayList<Pair<Integer, Integer>> distancePacmanGhosts = new ArrayList<>();
+		for (long ghosts = code >>> BITS_DIRECTION; ghosts != 0; ghosts >>>= BITS_GHOST) {
+			int value = (int) (ghosts & ((1 << BITS_GHOST) - 1)) - 1;
+			distancePacmanGhosts.add(new Pair<>(value / SIDE - TILE_RADIUS_GHOST_DETECTOR, value % SIDE - TILE_RADIUS_GHOST_DETECTOR));
+		}
+		
 		return distancePacmanGhosts;
 	}
 	
+	/**
+	 * @param distancePacmanGhosts The distances (x ; y) from pacman to the close ghosts: each coordinate must be between
+	 *                             -TILE_RADIUS_GHOST_DETECTOR and TILE_RADIUS_GHOST_DETECTOR.
+	 */
 	public void setDistancePacmanGhosts(@NotNull ArrayList<Pair<Integer, Integer>> distancePacmanGhosts) {
-		this.distancePacmanGhosts = distancePacmanGhosts;
+		if (distancePacmanGhosts.size() > MAX_CLOSE_GHOSTS)
+			throw new IllegalArgumentException("More than " + MAX_CLOSE_GHOSTS + " ghosts around pacman cannot be encoded");
+		
+		long ghosts = 0;
+		for (int i = 0; i < distancePacmanGhosts.size(); i++) {
+			int dx = distancePacmanGhosts.get(i).getKey();
+			int dy = distancePacmanGhosts.get(i).getValue();
+			if (Math.abs(dx) > TILE_RADIUS_GHOST_DETECTOR || Math.abs(dy) > TILE_RADIUS_GHOST_DETECTOR)
+				throw new IllegalArgumentException("The ghost (" + dx + " ; " + dy + ") is too far from pacman");
+			
+			ghosts |= encodeGhost(dx, dy) << (i * BITS_GHOST);
+		}
+		
+		code = (code & ((1 << BITS_DIRECTION) - 1)) | (ghosts << BITS_DIRECTION);
 	}
 	
 	public int getDirectionToClosestFood() {
-		return directionToClosestFood;
+		return (int) (code & ((1 << BITS_DIRECTION) - 1));
 	}
 	
 	public void setDirectionToClosestFood(int directionToClosestFood) {
-		this.directionToClosestFood = directionToClosestFood;
-	}
-	
-	@NotNull
-	public StateGamePacman getState() {
-		return state;
-	}
-	
-	public void setState(@NotNull StateGamePacman state) {
-		this.state = state;
+		if (directionToClosestFood < 0 || directionToClosestFood >= 1 << BITS_DIRECTION)
+			throw new IllegalArgumentException("Invalid direction: " + directionToClosestFood);
+		
+		code = (code & ~((1L << BITS_DIRECTION) - 1)) | directionToClosestFood;
 	}
 	
 	@NotNull
@@ -170,13 +230,12 @@ public class EtatPacmanMDPClassic implements Etat, Cloneable {
 		if (this == o) return true;
 		if (!(o instanceof EtatPacmanMDPClassic)) return false;
 		EtatPacmanMDPClassic that = (EtatPacmanMDPClassic) o;
-		return getDistancePacmanGhosts().equals(that.getDistancePacmanGhosts()) &&
-				Objects.equals(getDirectionToClosestFood(), that.getDirectionToClosestFood());
+		return code == that.code;
 	}
 	
 	@Override
 	public int hashCode() {
-		return Objects.hash(getDistancePacmanGhosts(), getDirectionToClosestFood());
+		return Long.hashCode(code);
 	}
 	
 	@Override
@@ -184,14 +243,15 @@ public class EtatPacmanMDPClassic implements Etat, Cloneable {
 		StringBuilder strb = new StringBuilder();
 		strb.append("ghost: ");
 		
-		if ((getDistancePacmanGhosts().isEmpty()))
+		ArrayList<Pair<Integer, Integer>> distancePacmanGhosts = getDistancePacmanGhosts();
+		if ((distancePacmanGhosts.isEmpty()))
 			strb.append("(null)");
 		else {
-			for (int i = 0, maxi = getDistancePacmanGhosts().size(); i < maxi; i++) {
+			for (int i = 0, maxi = distancePacmanGhosts.size(); i < maxi; i++) {
 				strb.append("(")
-					.append(getDistancePacmanGhosts().get(i).getKey())
+					.append(distancePacmanGhosts.get(i).getKey())
 					.append(" ; ")
-					.append(getDistancePacmanGhosts().get(i).getValue())
+					.append(distancePacmanGhosts.get(i).getValue())
 					.append(")");
 				
 				if (i + 1 < maxi)
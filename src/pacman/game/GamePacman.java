@@ -24,7 +24,7 @@ public class GamePacman extends Observable//extends TimerTask
 	protected ArrayList<AgentPacman> pacmansAgents;
 	protected ArrayList<AgentPacman> ghostsAgents;
 	//protected ArrayList<GameObserver> observers;
-	private boolean isPacmanTurn=true;//si vrai, bouge les pacman; si faux, bouge les ghosts: tour par tour
+	protected boolean isPacmanTurn=true;//si vrai, bouge les pacman; si faux, bouge les ghosts: tour par tour
 
 	/** pause entre chaque step=tour en ms*/
 	private long step_delay;
@@ -0,0 +1,85 @@
+package pacman.game;
+
+import pacman.elements.ActionPacman;
+import pacman.elements.StateGamePacman;
+
+/**
+ * Boucle de jeu sans affichage, pour l'apprentissage sur un grand nombre de parties.
+ * <p>
+ * Memes regles que {@link GamePacman} (les tours sont joues par {@link StateGamePacman}), mais:
+ * <li> les observateurs ne sont jamais notifies (pas de vue)
+ * <li> pas de pause entre les tours: step_delay est ignore
+ * <li> les actions des agents sont rangees dans des tableaux reutilises d'un tour a l'autre, pas de liste allouee par tour
+ * <p>
+ * Les agents ne doivent pas allouer non plus: utiliser les actions partagees de {@link ActionPacman#get(int)}.
+ */
+public class GamePacmanHeadless extends GamePacman
+{
+	private ActionPacman[] pactions=new ActionPacman[0];
+	private ActionPacman[] gactions=new ActionPacman[0];
+	
+	public GamePacmanHeadless(StateGamePacman state)
+	{
+		super(state);
+	}
+	
+	/** Pas de pause en mode headless: le delai est ignore */
+	@Override
+	public void setStep_delay(long time_delay) {
+	}
+	
+	/** Pas de vue en mode headless */
+	@Override
+	public void notifyObservers(Object arg) {
+	}
+	
+	/**
+	 * Un tour de jeu, bouge tous les pacmans ou tous les fantomes, compute scores
+	 */
+	@Override
+	public void oneStep(){
+		if (isPacmanTurn)
+		{
+			if (pactions.length!=state.getNumberOfPacmans())
+				pactions=new ActionPacman[state.getNumberOfPacmans()];
+			for(int i=0;i<pactions.length;i++)
+				pactions[i]=pacmansAgents.get(i).getAction(state.getPacmanState(i),state);
+			state.updatePacmans(pactions);
+			if (state.getNumberOfGhosts()!=0) isPacmanTurn=false;
+		}
+		else
+		{
+			bougeFantomes();
+			isPacmanTurn=true;
+		}
+		state.setScore(state.getScore()+StateGamePacman.STEP);
+	}
+	
+	/**
+	 * Execute 2 steps: une action de pacman, puis tous les fantomes, calcule score
+	 * <li> fontionne pour un unique pacman
+	 */
+	@Override
+	public void oneIteration(ActionPacman _a){
+		//un seul pacman
+		if (state.getNumberOfPacmans()!=1)
+			return;
+		
+		state.updatePacman(_a);
+		state.setScore(state.getScore()+StateGamePacman.STEP);
+		
+		//tour des fantomes, joue meme sans fantome (calcul du score de fin de partie)
+		bougeFantomes();
+		state.setScore(state.getScore()+StateGamePacman.STEP);
+		isPacmanTurn=true;
+	}
+	
+	private void bougeFantomes()
+	{
+		if (gactions.length!=state.getNumberOfGhosts())
+			gactions=new ActionPacman[state.getNumberOfGhosts()];
+		for(int i=0;i<gactions.length;i++)
+			gactions[i]=ghostsAgents.get(i).getAction(state.getGhostState(i),state);
+		state.updateGhosts(gactions);
+	}
+}